@@ -0,0 +1,259 @@
+import java.text.Normalizer;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The Analyzer class turns the words of documents and queries into the terms kept in the index, by passing each
+ * word through a chain of stages. A stage changes the token in place or drops it, so the same token can be
+ * reused for every word and no strings are made along the way. The index and the queries are analyzed by the
+ * same stages, which keeps the terms of a query formatted the same way as the terms of the index.
+ * The stages are Normalize, which keeps only the letters of the word and puts them in lower case, StopWords,
+ * which drops the words of the stop list, and Stem, which replaces a word with its stem.
+ *
+ */
+
+public class Analyzer {
+    private Stage[] stages;
+
+    /**
+     * Constructor for a chain of stages that are run in order
+     * @param stages The stages
+     */
+    public Analyzer(Stage... stages) {
+        this.stages = stages;
+    }
+
+    /**
+     * Passes a token through every stage, stopping at the first stage that drops it
+     * @param token The word, which is changed in place
+     * @return False if the word was dropped
+     */
+    public boolean analyze(Token token) {
+        for (Stage stage : stages) {
+            if (!stage.process(token))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * One step of an analyzer
+     */
+    public interface Stage {
+        /**
+         * @param token The word, which is changed in place
+         * @return False if the word is dropped
+         */
+        boolean process(Token token);
+    }
+
+    /**
+     * Keeps the letters of a word and puts them in lower case. Punctuation, symbols and numbers of every
+     * language are taken out, not only the ascii ones, so a word with curly quotes or a dash is the same term as
+     * the word without them. Each character is looked up in a table made once for every character, which holds
+     * the letter it is kept as or 0 if it is dropped, so no character has to be classified more than once. Case
+     * is folded the same way in every locale, by putting a letter in upper case and then in lower case, so
+     * forms like the final sigma become the same letter. Accents can also be folded, which turns a letter with an
+     * accent into the letter without it by dropping the combining accents it is made of. Words that are left
+     * empty are dropped.
+     */
+    public static class Normalize implements Stage {
+        //Changes whenever the way words are normalized changes, so indexes made the old way are made again
+        private static final int VERSION = 2;
+        private static final char[] LETTERS = table(false);
+        private static volatile boolean foldAccents;
+
+        private boolean keepWildcards;
+
+        /**
+         * @param keepWildcards Keeps the wildcards * and ? of a query term if true
+         */
+        public Normalize(boolean keepWildcards) {
+            this.keepWildcards = keepWildcards;
+        }
+
+        /**
+         * Turns accent folding on or off for every index. It should be set before any index is made.
+         * @param fold Folds the accents of letters if true
+         */
+        public static void setFoldAccents(boolean fold) {
+            foldAccents = fold;
+        }
+
+        /**
+         * @return A number that is different for each way words can be normalized, kept with the index so it is
+         * made again when it was normalized another way
+         */
+        public static int version() {
+            return 2 * VERSION + (foldAccents ? 1 : 0);
+        }
+
+        @Override
+        public boolean process(Token token) {
+            char[] table = foldAccents ? Accents.LETTERS : LETTERS;
+            char[] chars = token.buffer();
+            int length = token.length();
+            int n = 0;
+            for (int i = 0; i < length; i++) {
+                char c = chars[i];
+                char letter = table[c];
+                if (letter != 0) {
+                    chars[n++] = letter;
+                } else if (keepWildcards && (c == '*' || c == '?')) {
+                    chars[n++] = c;
+                } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(chars[i + 1])) {
+                    //Letters past the first 65536 characters are rare, so they are worked out each time
+                    int code = Character.toCodePoint(c, chars[++i]);
+                    if (isLetter(code)) {
+                        int folded = fold(code);
+                        n += Character.toChars(Character.isBmpCodePoint(folded) ? folded : code, chars, n);
+                    }
+                }
+            }
+            token.setLength(n);
+            return n > 0;
+        }
+
+        /**
+         * @param accents Folds the accents of letters if true
+         * @return The letter each character is kept as, or 0 if it is dropped
+         */
+        private static char[] table(boolean accents) {
+            char[] table = new char[Character.MAX_VALUE + 1];
+            for (int c = 0; c <= Character.MAX_VALUE; c++) {
+                if (!isLetter(c) || Character.isSurrogate((char) c) || accents && isAccent(c))
+                    continue;
+                int folded = fold(c);
+                if (!Character.isBmpCodePoint(folded))
+                    folded = c;
+                if (accents) {
+                    //A letter made of a base letter and accents is kept as the base letter
+                    String parts = Normalizer.normalize(String.valueOf((char) folded), Normalizer.Form.NFD);
+                    boolean accented = parts.length() > 1 && isLetter(parts.charAt(0));
+                    for (int i = 1; i < parts.length() && accented; i++)
+                        accented = isAccent(parts.charAt(i));
+                    if (accented)
+                        folded = parts.charAt(0);
+                }
+                table[c] = (char) folded;
+            }
+            return table;
+        }
+
+        /**
+         * @param code A code point
+         * @return True if the code point is a letter or a mark that is part of a letter
+         */
+        private static boolean isLetter(int code) {
+            int type = Character.getType(code);
+            return Character.isLetter(code) || type == Character.NON_SPACING_MARK
+                    || type == Character.COMBINING_SPACING_MARK || type == Character.ENCLOSING_MARK;
+        }
+
+        /**
+         * @param code A code point
+         * @return True if the code point is one of the combining accents used with Latin, Greek and Cyrillic
+         * letters, the marks of other scripts are parts of their letters and are kept
+         */
+        private static boolean isAccent(int code) {
+            return code >= 0x300 && code <= 0x36f || code >= 0x1ab0 && code <= 0x1aff
+                    || code >= 0x1dc0 && code <= 0x1dff || code >= 0x20d0 && code <= 0x20ff
+                    || code >= 0xfe20 && code <= 0xfe2f;
+        }
+
+        /**
+         * @param code A letter
+         * @return The letter with its case folded, which is the same in every locale
+         */
+        private static int fold(int code) {
+            return Character.toLowerCase(Character.toUpperCase(code));
+        }
+
+        /**
+         * The table with accents folded, which is only made if accent folding is turned on
+         */
+        private static class Accents {
+            private static final char[] LETTERS = table(true);
+        }
+    }
+
+    /**
+     * Drops the words of the stop list
+     */
+    public static class StopWords implements Stage {
+        private Set<TermKey> words;
+
+        /**
+         * @param stopList The stop words
+         */
+        public StopWords(StopList stopList) {
+            words = new HashSet<>();
+            for (String word : stopList.getStopList().values())
+                words.add(new TermKey(word));
+        }
+
+        /**
+         * @param word A word that has been normalized
+         * @return True if the word is a stop word
+         */
+        public boolean contains(CharSequence word) {
+            return words.contains(new TermKey(word));
+        }
+
+        @Override
+        public boolean process(Token token) {
+            return !contains(token);
+        }
+    }
+
+    /**
+     * Replaces a word with its stem by Porter's Algorithm, using the stemmer of the calling thread. The stems of
+     * the words stemmed lately are kept in a cache that every thread shares, since queries and the words that
+     * are not in the dictionary are stemmed again and again. The cache is emptied when it reaches CACHE_SIZE
+     * words, which keeps its memory bounded without keeping track of which words were used last.
+     */
+    public static class Stem implements Stage {
+        static final int CACHE_SIZE = 1 << 16;
+        private static final Map<TermKey, String> CACHE = new ConcurrentHashMap<>();
+
+        @Override
+        public boolean process(Token token) {
+            //The cache is looked up with the token, so a word that was stemmed before makes no strings
+            String stem = CACHE.get(new TermKey(token));
+            if (stem != null) {
+                token.set(stem);
+                return true;
+            }
+            String word = token.toString();
+            token.setLength(Stemmer.local().stem(token.buffer(), 0, token.length(), token.buffer()));
+            remember(word, token.toString());
+            return true;
+        }
+
+        /**
+         * @param word A normalized word
+         * @return The stem of the word
+         */
+        public static String stem(String word) {
+            String stem = CACHE.get(new TermKey(word));
+            if (stem == null) {
+                char[] out = new char[word.length()];
+                stem = new String(out, 0, Stemmer.local().stem(word, 0, word.length(), out));
+                remember(word, stem);
+            }
+            return stem;
+        }
+
+        /**
+         * @param word A word
+         * @param stem The stem of the word, which is kept in the cache
+         */
+        private static void remember(String word, String stem) {
+            if (CACHE.size() >= CACHE_SIZE)
+                CACHE.clear();
+            CACHE.put(new TermKey(word), stem);
+        }
+    }
+}
@@ -0,0 +1,230 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+/**
+ * The CorpusWalker class finds the documents to be indexed in a directory and all of its subdirectories.
+ * Each directory is read by its own task on a fork join pool, so large trees of folders are walked in parallel.
+ * Documents can be filtered by glob patterns and by size, and can be handed to the indexer as they are found.
+ * The entries of zip files are found as separate documents.
+ *
+ */
+
+public class CorpusWalker {
+    private static final int CAPACITY = 1024;
+    private static final File END = new File("");
+
+    private Path root;
+    private PathMatcher include;
+    private PathMatcher exclude;
+    private long maxSize;
+
+    /**
+     * Constructor for a walker that finds every file under the directory
+     * @param dir The path of the folder containing the files that will be indexed
+     */
+    public CorpusWalker(String dir) {
+        this(dir, null, null, Long.MAX_VALUE);
+    }
+
+    /**
+     * Constructor for a walker with filters. The patterns use glob syntax and are matched against both the name
+     * of a file and its path from the directory, so *.txt matches text files in every subdirectory.
+     * @param dir The path of the folder containing the files that will be indexed
+     * @param include Only files matching this pattern are indexed, null to index every file
+     * @param exclude Files and directories matching this pattern are skipped, null to skip nothing
+     * @param maxSize Files larger than this number of bytes are skipped
+     */
+    public CorpusWalker(String dir, String include, String exclude, long maxSize) {
+        root = Paths.get(dir);
+        this.include = include == null ? null : FileSystems.getDefault().getPathMatcher("glob:" + include);
+        this.exclude = exclude == null ? null : FileSystems.getDefault().getPathMatcher("glob:" + exclude);
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @return The path of the directory that is walked
+     */
+    public String getDir() {
+        return root.toString();
+    }
+
+    /**
+     * Walks the whole directory before returning
+     * @return Every file that passed the filters, sorted by path
+     */
+    public File[] list() {
+        ConcurrentLinkedQueue<File> found = new ConcurrentLinkedQueue<>();
+        walk(found::add);
+        File[] files = found.toArray(new File[found.size()]);
+        Arrays.sort(files);
+        return files;
+    }
+
+    /**
+     * Starts walking the directory in the background and returns the files as they are found
+     * @return Iterator over the files that passed the filters, in the order they were found
+     */
+    public Iterator<File> stream() {
+        BlockingQueue<File> queue = new ArrayBlockingQueue<>(CAPACITY);
+        Thread thread = new Thread(() -> {
+            try {
+                walk(file -> put(queue, file));
+            } finally {
+                put(queue, END);
+            }
+        }, "CorpusWalker " + root);
+        thread.setDaemon(true);
+        thread.start();
+
+        return new Iterator<File>() {
+            private File next;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null) {
+                    try {
+                        next = queue.take();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        next = END;
+                    }
+                }
+                return next != END;
+            }
+
+            @Override
+            public File next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                File file = next;
+                next = null;
+                return file;
+            }
+        };
+    }
+
+    /**
+     * Walks the directory in parallel, waiting until every subdirectory has been read
+     * @param found Called with each file that passed the filters, from any of the walking threads
+     */
+    public void walk(Consumer<File> found) {
+        if (!Files.isDirectory(root))
+            return;
+        ForkJoinPool pool = new ForkJoinPool();
+        try {
+            pool.invoke(new DirectoryTask(root, found));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Reads one directory, handing over its files and forking a task for each of its subdirectories
+     */
+    private class DirectoryTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private Path dir;
+        private Consumer<File> found;
+
+        DirectoryTask(Path dir, Consumer<File> found) {
+            this.dir = dir;
+            this.found = found;
+        }
+
+        @Override
+        protected void compute() {
+            List<DirectoryTask> tasks = new ArrayList<>();
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+                for (Path path : entries) {
+                    if (matches(exclude, path))
+                        continue;
+                    BasicFileAttributes attributes;
+                    try {
+                        attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                    } catch (IOException e) {
+                        continue;
+                    }
+                    if (attributes.isDirectory()) {
+                        //Symbolic links to directories are not followed, so a link cannot make the walk loop
+                        if (!Files.isSymbolicLink(path))
+                            tasks.add(new DirectoryTask(path, found));
+                    } else if (attributes.isRegularFile() && Documents.isArchive(path.toFile())) {
+                        archive(path.toFile(), found);
+                    } else if (attributes.isRegularFile() && attributes.size() <= maxSize
+                            && (include == null || matches(include, path))) {
+                        found.accept(path.toFile());
+                    }
+                }
+            } catch (IOException e) {
+                //A directory that cannot be read is left out of the corpus
+                return;
+            }
+            invokeAll(tasks);
+        }
+    }
+
+    /**
+     * Hands over each entry of a zip file as its own document. The filters are checked against the names of the
+     * entries and their uncompressed sizes.
+     * @param zip The zip file
+     * @param found Called with each entry that passed the filters
+     */
+    private void archive(File zip, Consumer<File> found) {
+        List<Map.Entry<File, Long>> entries;
+        try {
+            entries = Documents.entries(zip);
+        } catch (IOException e) {
+            //A zip file that cannot be read is left out of the corpus
+            return;
+        }
+        for (Map.Entry<File, Long> entry : entries) {
+            Path name = Paths.get(entry.getKey().getName());
+            if (entry.getValue() <= maxSize && (include == null || include.matches(name))
+                    && (exclude == null || !exclude.matches(name)))
+                found.accept(entry.getKey());
+        }
+    }
+
+    /**
+     * @param matcher The pattern, which may be null
+     * @param path The path of a file or directory in the walk
+     * @return True if the pattern matches the file's name or its path from the directory
+     */
+    private boolean matches(PathMatcher matcher, Path path) {
+        if (matcher == null)
+            return false;
+        return matcher.matches(path.getFileName()) || matcher.matches(root.relativize(path));
+    }
+
+    /**
+     * Adds a file to the queue, waiting if the indexer has fallen behind
+     * @param queue The queue of files found
+     * @param file The file that was found
+     */
+    private static void put(BlockingQueue<File> queue, File file) {
+        try {
+            queue.put(file);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -22,13 +22,10 @@ public class Displayer extends JFrame{
     
     /**
      * Displays the list of items for queries that do not have stemming
-     * @param out The list of results to be displayed
+     * @param out The list of results to be displayed, rows are only rendered as they are scrolled to
      */
-    public void displayNonStem(Object[] out) {
-        JList<Object> list = new JList<>(out);
-        list.setVisibleRowCount(10);
-        list.setPreferredSize(null);
-        JScrollPane scroll = new JScrollPane(list);
+    public void displayNonStem(ListModel<Object> out) {
+        JScrollPane scroll = new JScrollPane(makeList(out));
         panel.add(scroll);
         add(panel);
         pack();
@@ -42,18 +39,12 @@ public class Displayer extends JFrame{
      * @param out The list of results from the original query
      * @param stemOut The list of results from the stemmed query
      */
-    public void displayStem(String stemQuery, Object[] out, Object[] stemOut) {
-        JList<Object> list1 = new JList<>(out);
-        list1.setVisibleRowCount(10);
-        list1.setPreferredSize(null);
-        JScrollPane scroll1 = new JScrollPane(list1);
+    public void displayStem(String stemQuery, ListModel<Object> out, ListModel<Object> stemOut) {
+        JScrollPane scroll1 = new JScrollPane(makeList(out));
         
         JLabel label = new JLabel("Results for similar query " + stemQuery);
         
-        JList<Object> list2 = new JList<>(stemOut);
-        list2.setVisibleRowCount(10);
-        list2.setPreferredSize(null);
-        JScrollPane scroll2 = new JScrollPane(list2);
+        JScrollPane scroll2 = new JScrollPane(makeList(stemOut));
         
         panel.add(scroll1);
         panel.add(label);
@@ -64,4 +55,19 @@ public class Displayer extends JFrame{
         setSize(700, 500);
         setVisible(true);
     }
+    
+    /**
+     * Makes the list for a set of results. For search results every row is given the size of a prototype row,
+     * so the list never has to render the rows that are not on screen to lay itself out.
+     * @param model The list of results
+     * @return The list that displays the results
+     */
+    private JList<Object> makeList(ListModel<Object> model) {
+        JList<Object> list = new JList<>(model);
+        if (model instanceof ResultListModel)
+            list.setPrototypeCellValue(((ResultListModel) model).getPrototype());
+        list.setVisibleRowCount(10);
+        list.setPreferredSize(null);
+        return list;
+    }
 }
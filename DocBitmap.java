@@ -0,0 +1,566 @@
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * The DocBitmap class is a compressed set of document ids, the positions of the documents in the corpus. It is
+ * split the way a roaring bitmap is, by the high 16 bits of each id, and each part is kept in whichever form is
+ * smallest: a sorted array of the low 16 bits when there are few ids, a run list when the ids come in long
+ * stretches, or a bitmap of 65536 bits otherwise. Sets are combined with and, or and and not without looking at
+ * the lists of the words they came from.
+ *
+ */
+
+public class DocBitmap implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private static final int ARRAY_MAX = 4096;
+    private static final int WORDS = 1024;
+
+    private char[] keys;
+    private Container[] containers;
+    private int size;
+
+    /**
+     * Constructor for an empty set
+     */
+    public DocBitmap() {
+        keys = new char[0];
+        containers = new Container[0];
+    }
+
+    /**
+     * Makes a set from document ids
+     * @param docs The ids in increasing order, with no repeats
+     * @param count The number of ids to take from the array
+     * @return The set of the ids
+     */
+    public static DocBitmap of(int[] docs, int count) {
+        DocBitmap bitmap = new DocBitmap();
+        int i = 0;
+        while (i < count) {
+            int high = docs[i] >>> 16;
+            int j = i;
+            while (j < count && docs[j] >>> 16 == high)
+                j++;
+            char[] low = new char[j - i];
+            for (int k = i; k < j; k++)
+                low[k - i] = (char) docs[k];
+            bitmap.append((char) high, ArrayContainer.best(low, low.length));
+            i = j;
+        }
+        return bitmap;
+    }
+
+    /**
+     * @param doc A document id
+     * @return True if the document is in the set
+     */
+    public boolean contains(int doc) {
+        int i = find((char) (doc >>> 16));
+        return i >= 0 && containers[i].contains((char) doc);
+    }
+
+    /**
+     * @return The number of documents in the set
+     */
+    public int cardinality() {
+        int total = 0;
+        for (int i = 0; i < size; i++)
+            total += containers[i].cardinality();
+        return total;
+    }
+
+    /**
+     * @return True if there are no documents in the set
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Adds a document without changing this set. Only the part holding the document is copied, the other parts
+     * are shared with this set.
+     * @param doc A document id
+     * @return The set with the document added, this set if it is already in it
+     */
+    public DocBitmap with(int doc) {
+        if (contains(doc))
+            return this;
+        char key = (char) (doc >>> 16);
+        int i = find(key);
+        DocBitmap result = new DocBitmap();
+        if (i >= 0) {
+            result.keys = Arrays.copyOf(keys, size);
+            result.containers = Arrays.copyOf(containers, size);
+            result.containers[i] = containers[i].with((char) doc);
+            result.size = size;
+            return result;
+        }
+        i = -i - 1;
+        result.keys = new char[size + 1];
+        result.containers = new Container[size + 1];
+        System.arraycopy(keys, 0, result.keys, 0, i);
+        System.arraycopy(containers, 0, result.containers, 0, i);
+        result.keys[i] = key;
+        result.containers[i] = new ArrayContainer(new char[] {(char) doc});
+        System.arraycopy(keys, i, result.keys, i + 1, size - i);
+        System.arraycopy(containers, i, result.containers, i + 1, size - i);
+        result.size = size + 1;
+        return result;
+    }
+
+    /**
+     * @param other Another set
+     * @return The documents that are in both sets
+     */
+    public DocBitmap and(DocBitmap other) {
+        DocBitmap result = new DocBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                result.append(keys[i], containers[i].and(other.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param other Another set
+     * @return The documents that are in either set
+     */
+    public DocBitmap or(DocBitmap other) {
+        DocBitmap result = new DocBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < size || j < other.size) {
+            if (j == other.size || i < size && keys[i] < other.keys[j]) {
+                result.append(keys[i], containers[i]);
+                i++;
+            } else if (i == size || keys[i] > other.keys[j]) {
+                result.append(other.keys[j], other.containers[j]);
+                j++;
+            } else {
+                result.append(keys[i], containers[i].or(other.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param other Another set
+     * @return The documents that are in this set but not in the other
+     */
+    public DocBitmap andNot(DocBitmap other) {
+        DocBitmap result = new DocBitmap();
+        int j = 0;
+        for (int i = 0; i < size; i++) {
+            while (j < other.size && other.keys[j] < keys[i])
+                j++;
+            if (j < other.size && other.keys[j] == keys[i])
+                result.append(keys[i], containers[i].andNot(other.containers[j]));
+            else
+                result.append(keys[i], containers[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Calls the action with every document in the set in increasing order
+     * @param action The action
+     */
+    public void forEach(IntConsumer action) {
+        for (int i = 0; i < size; i++)
+            containers[i].forEach(keys[i] << 16, action);
+    }
+
+    /**
+     * @return The documents in the set in increasing order
+     */
+    public int[] toArray() {
+        int[] docs = new int[cardinality()];
+        int[] n = new int[1];
+        forEach(doc -> docs[n[0]++] = doc);
+        return docs;
+    }
+
+    /**
+     * Adds a part to the end of the set, leaving out empty parts
+     * @param key The high 16 bits of the ids in the part, larger than any key already in the set
+     * @param container The low 16 bits of the ids
+     */
+    private void append(char key, Container container) {
+        if (container.cardinality() == 0)
+            return;
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, Math.max(4, size * 2));
+            containers = Arrays.copyOf(containers, keys.length);
+        }
+        keys[size] = key;
+        containers[size] = container;
+        size++;
+    }
+
+    /**
+     * @param key The high 16 bits of an id
+     * @return The index of the part with the key, or a negative number if there is none
+     */
+    private int find(char key) {
+        return Arrays.binarySearch(keys, 0, size, key);
+    }
+
+    /**
+     * The low 16 bits of the ids that share their high 16 bits. Parts are never changed once they are made, so
+     * a part can be shared by several sets.
+     */
+    private abstract static class Container implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        abstract boolean contains(char low);
+
+        abstract int cardinality();
+
+        abstract void forEach(int high, IntConsumer action);
+
+        /**
+         * @return The part as a bitmap of 1024 longs, which may be shared and must not be changed
+         */
+        abstract long[] words();
+
+        /**
+         * @param low The low bits of an id that is not in the part
+         * @return A new part that also holds the id
+         */
+        Container with(char low) {
+            long[] words = words().clone();
+            words[low >>> 6] |= 1L << low;
+            return BitmapContainer.best(words);
+        }
+
+        Container and(Container other) {
+            if (other instanceof ArrayContainer)
+                return other.and(this);
+            return BitmapContainer.best(and(words(), other.words()));
+        }
+
+        Container or(Container other) {
+            return BitmapContainer.best(or(words(), other.words()));
+        }
+
+        Container andNot(Container other) {
+            return BitmapContainer.best(andNot(words(), other.words()));
+        }
+
+        private static long[] and(long[] a, long[] b) {
+            long[] words = new long[WORDS];
+            for (int i = 0; i < WORDS; i++)
+                words[i] = a[i] & b[i];
+            return words;
+        }
+
+        private static long[] or(long[] a, long[] b) {
+            long[] words = new long[WORDS];
+            for (int i = 0; i < WORDS; i++)
+                words[i] = a[i] | b[i];
+            return words;
+        }
+
+        private static long[] andNot(long[] a, long[] b) {
+            long[] words = new long[WORDS];
+            for (int i = 0; i < WORDS; i++)
+                words[i] = a[i] & ~b[i];
+            return words;
+        }
+    }
+
+    /**
+     * A sorted array of the low bits, used for up to 4096 ids
+     */
+    private static class ArrayContainer extends Container {
+        private static final long serialVersionUID = 1L;
+        private char[] values;
+
+        ArrayContainer(char[] values) {
+            this.values = values;
+        }
+
+        /**
+         * @param values Sorted low bits
+         * @param count The number of values to use
+         * @return The smallest part holding the values
+         */
+        static Container best(char[] values, int count) {
+            if (count > ARRAY_MAX || RunContainer.runs(values, count) * 2 < count) {
+                long[] words = new long[WORDS];
+                for (int i = 0; i < count; i++)
+                    words[values[i] >>> 6] |= 1L << values[i];
+                return BitmapContainer.best(words);
+            }
+            return new ArrayContainer(count == values.length ? values : Arrays.copyOf(values, count));
+        }
+
+        @Override
+        boolean contains(char low) {
+            return Arrays.binarySearch(values, low) >= 0;
+        }
+
+        @Override
+        int cardinality() {
+            return values.length;
+        }
+
+        @Override
+        void forEach(int high, IntConsumer action) {
+            for (char v : values)
+                action.accept(high | v);
+        }
+
+        @Override
+        long[] words() {
+            long[] words = new long[WORDS];
+            for (char v : values)
+                words[v >>> 6] |= 1L << v;
+            return words;
+        }
+
+        @Override
+        Container with(char low) {
+            int i = -Arrays.binarySearch(values, low) - 1;
+            char[] result = new char[values.length + 1];
+            System.arraycopy(values, 0, result, 0, i);
+            result[i] = low;
+            System.arraycopy(values, i, result, i + 1, values.length - i);
+            return best(result, result.length);
+        }
+
+        @Override
+        Container and(Container other) {
+            char[] result = new char[values.length];
+            int n = 0;
+            if (other instanceof ArrayContainer) {
+                //Merges the two sorted arrays
+                char[] o = ((ArrayContainer) other).values;
+                int i = 0;
+                int j = 0;
+                while (i < values.length && j < o.length) {
+                    if (values[i] < o[j]) {
+                        i++;
+                    } else if (values[i] > o[j]) {
+                        j++;
+                    } else {
+                        result[n++] = values[i];
+                        i++;
+                        j++;
+                    }
+                }
+            } else {
+                for (char v : values) {
+                    if (other.contains(v))
+                        result[n++] = v;
+                }
+            }
+            return new ArrayContainer(Arrays.copyOf(result, n));
+        }
+
+        @Override
+        Container or(Container other) {
+            if (!(other instanceof ArrayContainer))
+                return super.or(other);
+            char[] o = ((ArrayContainer) other).values;
+            char[] result = new char[values.length + o.length];
+            int i = 0;
+            int j = 0;
+            int n = 0;
+            while (i < values.length || j < o.length) {
+                if (j == o.length || i < values.length && values[i] < o[j])
+                    result[n++] = values[i++];
+                else if (i == values.length || values[i] > o[j])
+                    result[n++] = o[j++];
+                else {
+                    result[n++] = values[i++];
+                    j++;
+                }
+            }
+            return best(result, n);
+        }
+
+        @Override
+        Container andNot(Container other) {
+            char[] result = new char[values.length];
+            int n = 0;
+            for (char v : values) {
+                if (!other.contains(v))
+                    result[n++] = v;
+            }
+            return new ArrayContainer(Arrays.copyOf(result, n));
+        }
+    }
+
+    /**
+     * A bitmap of all 65536 low bits, used when there are too many ids for an array and too many runs
+     */
+    private static class BitmapContainer extends Container {
+        private static final long serialVersionUID = 1L;
+        private long[] words;
+        private int cardinality;
+
+        BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        /**
+         * @param words A bitmap of 1024 longs, which is kept by the part if it is used as a bitmap
+         * @return The smallest part holding the bits that are set
+         */
+        static Container best(long[] words) {
+            int cardinality = 0;
+            int runs = 0;
+            long last = 0;
+            for (int i = 0; i < WORDS; i++) {
+                cardinality += Long.bitCount(words[i]);
+                //A run starts at each bit that is set where the bit before it is not
+                runs += Long.bitCount(words[i] & ~(words[i] << 1 | last >>> 63));
+                last = words[i];
+            }
+            if (runs * 2 < Math.min(cardinality, ARRAY_MAX))
+                return RunContainer.of(words, runs);
+            if (cardinality <= ARRAY_MAX) {
+                char[] values = new char[cardinality];
+                int n = 0;
+                for (int i = 0; i < WORDS; i++) {
+                    long w = words[i];
+                    while (w != 0) {
+                        values[n++] = (char) (i * 64 + Long.numberOfTrailingZeros(w));
+                        w &= w - 1;
+                    }
+                }
+                return new ArrayContainer(values);
+            }
+            return new BitmapContainer(words, cardinality);
+        }
+
+        @Override
+        boolean contains(char low) {
+            return (words[low >>> 6] & 1L << low) != 0;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        void forEach(int high, IntConsumer action) {
+            for (int i = 0; i < WORDS; i++) {
+                long w = words[i];
+                while (w != 0) {
+                    action.accept(high | i * 64 + Long.numberOfTrailingZeros(w));
+                    w &= w - 1;
+                }
+            }
+        }
+
+        @Override
+        long[] words() {
+            return words;
+        }
+    }
+
+    /**
+     * A list of runs of low bits, each kept as its start and its length less one
+     */
+    private static class RunContainer extends Container {
+        private static final long serialVersionUID = 1L;
+        private char[] runs;
+        private int cardinality;
+
+        RunContainer(char[] runs) {
+            this.runs = runs;
+            for (int i = 1; i < runs.length; i += 2)
+                cardinality += runs[i] + 1;
+        }
+
+        /**
+         * @param words A bitmap of 1024 longs
+         * @param count The number of runs in the bitmap
+         * @return The runs of the bitmap
+         */
+        static RunContainer of(long[] words, int count) {
+            char[] runs = new char[count * 2];
+            int n = 0;
+            int start = -1;
+            for (int bit = 0; bit <= 65536; bit++) {
+                boolean set = bit < 65536 && (words[bit >>> 6] & 1L << bit) != 0;
+                if (set && start < 0) {
+                    start = bit;
+                } else if (!set && start >= 0) {
+                    runs[n++] = (char) start;
+                    runs[n++] = (char) (bit - 1 - start);
+                    start = -1;
+                }
+            }
+            return new RunContainer(runs);
+        }
+
+        /**
+         * @param values Sorted low bits
+         * @param count The number of values to use
+         * @return The number of runs in the values
+         */
+        static int runs(char[] values, int count) {
+            int runs = 0;
+            for (int i = 0; i < count; i++) {
+                if (i == 0 || values[i] != values[i - 1] + 1)
+                    runs++;
+            }
+            return runs;
+        }
+
+        @Override
+        boolean contains(char low) {
+            //Finds the last run that starts at or before the value
+            int lo = 0;
+            int hi = runs.length / 2 - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (runs[2 * mid] <= low)
+                    lo = mid + 1;
+                else
+                    hi = mid - 1;
+            }
+            return hi >= 0 && low - runs[2 * hi] <= runs[2 * hi + 1];
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        void forEach(int high, IntConsumer action) {
+            for (int i = 0; i < runs.length; i += 2) {
+                for (int v = runs[i]; v <= runs[i] + runs[i + 1]; v++)
+                    action.accept(high | v);
+            }
+        }
+
+        @Override
+        long[] words() {
+            long[] words = new long[WORDS];
+            for (int i = 0; i < runs.length; i += 2) {
+                for (int v = runs[i]; v <= runs[i] + runs[i + 1]; v++)
+                    words[v >>> 6] |= 1L << v;
+            }
+            return words;
+        }
+    }
+}
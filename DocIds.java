@@ -0,0 +1,170 @@
+/**
+ * The DocIds class intersects and unions sorted arrays of document ids, which is the inner loop of every
+ * multi-word query. There are three ways to intersect: a plain merge, a merge without branches that the jit
+ * compiles to conditional moves so it does not pay for mispredicted branches when the lists interleave, and a
+ * galloping search that skips through the longer list when one list is much shorter than the other.
+ * intersect picks between them by the ratio of the lengths.
+ *
+ */
+
+public class DocIds {
+    static final int GALLOP_RATIO = 16;
+
+    /**
+     * Intersects two sorted arrays, picking the way to do it by the ratio of their lengths
+     * @param a Document ids in increasing order, with no repeats
+     * @param na The number of ids in a
+     * @param b Document ids in increasing order, with no repeats
+     * @param nb The number of ids in b
+     * @param out Gets the ids in both arrays, in increasing order, and must have room for the shorter array
+     * @return The number of ids put in out
+     */
+    public static int intersect(int[] a, int na, int[] b, int nb, int[] out) {
+        if (na > nb)
+            return intersect(b, nb, a, na, out);
+        if (na == 0)
+            return 0;
+        if (nb / na >= GALLOP_RATIO)
+            return intersectGallop(a, na, b, nb, out);
+        return intersectBranchless(a, na, b, nb, out);
+    }
+
+    /**
+     * Intersects two sorted arrays by walking both of them with a branch for each comparison
+     * @param a Document ids in increasing order, with no repeats
+     * @param na The number of ids in a
+     * @param b Document ids in increasing order, with no repeats
+     * @param nb The number of ids in b
+     * @param out Gets the ids in both arrays, and must have room for the shorter array
+     * @return The number of ids put in out
+     */
+    public static int intersectMerge(int[] a, int na, int[] b, int nb, int[] out) {
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < na && j < nb) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                out[k++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return k;
+    }
+
+    /**
+     * Intersects two sorted arrays by walking both of them, moving forward by the result of each comparison
+     * instead of branching on it
+     * @param a Document ids in increasing order, with no repeats
+     * @param na The number of ids in a
+     * @param b Document ids in increasing order, with no repeats
+     * @param nb The number of ids in b
+     * @param out Gets the ids in both arrays, and must have room for the shorter array
+     * @return The number of ids put in out
+     */
+    public static int intersectBranchless(int[] a, int na, int[] b, int nb, int[] out) {
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < na && j < nb) {
+            int x = a[i];
+            int y = b[j];
+            //The id is always written, but only kept if it was in both arrays. Until the shorter array runs
+            //out fewer ids have been kept than it has, so there is always room.
+            out[k] = x;
+            k += x == y ? 1 : 0;
+            i += x <= y ? 1 : 0;
+            j += x >= y ? 1 : 0;
+        }
+        return k;
+    }
+
+    /**
+     * Intersects a short sorted array with a long one by searching for each id of the short array in the long
+     * one, doubling the step from the last match until it passes the id and then searching back
+     * @param small Document ids in increasing order, with no repeats
+     * @param ns The number of ids in small
+     * @param large Document ids in increasing order, with no repeats
+     * @param nl The number of ids in large
+     * @param out Gets the ids in both arrays, and must have room for the short array
+     * @return The number of ids put in out
+     */
+    public static int intersectGallop(int[] small, int ns, int[] large, int nl, int[] out) {
+        int k = 0;
+        int j = 0;
+        for (int i = 0; i < ns && j < nl; i++) {
+            int x = small[i];
+            if (large[j] < x) {
+                //Finds a range that holds the first id that is not smaller than x
+                int low = j;
+                int step = 1;
+                while (j + step < nl && large[j + step] < x) {
+                    low = j + step;
+                    step <<= 1;
+                }
+                int high = Math.min(j + step, nl - 1);
+                while (low < high) {
+                    int mid = (low + high) >>> 1;
+                    if (large[mid] < x)
+                        low = mid + 1;
+                    else
+                        high = mid;
+                }
+                j = low;
+                if (large[j] < x)
+                    break;
+            }
+            if (large[j] == x)
+                out[k++] = x;
+        }
+        return k;
+    }
+
+    /**
+     * Unions two sorted arrays
+     * @param a Document ids in increasing order, with no repeats
+     * @param na The number of ids in a
+     * @param b Document ids in increasing order, with no repeats
+     * @param nb The number of ids in b
+     * @param out Gets the ids in either array, in increasing order, and must have room for both arrays
+     * @return The number of ids put in out
+     */
+    public static int union(int[] a, int na, int[] b, int nb, int[] out) {
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < na && j < nb) {
+            int x = a[i];
+            int y = b[j];
+            out[k++] = Math.min(x, y);
+            i += x <= y ? 1 : 0;
+            j += x >= y ? 1 : 0;
+        }
+        while (i < na)
+            out[k++] = a[i++];
+        while (j < nb)
+            out[k++] = b[j++];
+        return k;
+    }
+
+    /**
+     * Keeps the ids that are in a set, in place
+     * @param a Document ids
+     * @param n The number of ids in a
+     * @param set The set of documents to keep
+     * @return The number of ids kept at the start of a
+     */
+    public static int filter(int[] a, int n, DocBitmap set) {
+        int k = 0;
+        for (int i = 0; i < n; i++) {
+            int x = a[i];
+            a[k] = x;
+            k += set.contains(x) ? 1 : 0;
+        }
+        return k;
+    }
+}
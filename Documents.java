@@ -0,0 +1,239 @@
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * The Documents class opens the documents of the corpus, which can be plain files, gzip files, or entries of zip
+ * files. An entry of a zip file is named by the path of the zip file followed by !/ and the name of the entry,
+ * the same way entries are named in jar urls, so it can be kept in the index like any other file.
+ * Compressed documents are read straight from the archive without being extracted.
+ *
+ */
+
+public class Documents {
+    private static final String SEPARATOR = "!/";
+    private static final int CHUNK = 64 * 1024;
+    private static final int CHUNKS = 4;
+    private static final byte[] END = new byte[0];
+    private static final ExecutorService DECOMPRESS = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "Decompress");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * @param file A file found in the corpus directory
+     * @return True if the file is a zip file whose entries are indexed as separate documents
+     */
+    public static boolean isArchive(File file) {
+        return file.getName().toLowerCase().endsWith(".zip");
+    }
+
+    /**
+     * Lists the entries of a zip file as documents
+     * @param zip The zip file
+     * @return A document for each file in the zip file with its uncompressed size, sorted by name
+     * @throws IOException If the zip file cannot be read
+     */
+    public static List<Map.Entry<File, Long>> entries(File zip) throws IOException {
+        List<Map.Entry<File, Long>> docs = new ArrayList<>();
+        try (ZipFile z = new ZipFile(zip)) {
+            Enumeration<? extends ZipEntry> e = z.entries();
+            while (e.hasMoreElements()) {
+                ZipEntry entry = e.nextElement();
+                if (!entry.isDirectory())
+                    docs.add(new AbstractMap.SimpleEntry<>(new File(zip.getPath() + SEPARATOR + entry.getName()),
+                            entry.getSize()));
+            }
+        }
+        docs.sort((a, b) -> a.getKey().compareTo(b.getKey()));
+        return docs;
+    }
+
+    /**
+     * @param doc A document of the corpus
+     * @return The file on disk that holds the document, which is the zip file for an entry of a zip file
+     */
+    public static File container(File doc) {
+        String path = doc.getPath();
+        int separator = path.indexOf(SEPARATOR);
+        if (separator < 0)
+            return doc;
+        return new File(path.substring(0, separator));
+    }
+
+    /**
+     * Opens a document for reading, decompressing it if it is a gzip file or an entry of a zip file
+     * @param doc The document to be read
+     * @return The contents of the document
+     * @throws FileNotFoundException If the document cannot be opened
+     */
+    public static InputStream open(File doc) throws FileNotFoundException {
+        String path = doc.getPath();
+        int separator = path.indexOf(SEPARATOR);
+        try {
+            if (separator >= 0) {
+                ZipFile zip = new ZipFile(path.substring(0, separator));
+                ZipEntry entry = zip.getEntry(path.substring(separator + SEPARATOR.length()));
+                if (entry == null) {
+                    zip.close();
+                    throw new FileNotFoundException(path);
+                }
+                //Closing the entry's stream also closes the zip file
+                return new FilterInputStream(zip.getInputStream(entry)) {
+                    @Override
+                    public void close() throws IOException {
+                        super.close();
+                        zip.close();
+                    }
+                };
+            }
+            if (path.toLowerCase().endsWith(".gz"))
+                return new GZIPInputStream(new FileInputStream(doc), CHUNK);
+            return new BufferedInputStream(new FileInputStream(doc), CHUNK);
+        } catch (FileNotFoundException e) {
+            throw e;
+        } catch (IOException e) {
+            FileNotFoundException notFound = new FileNotFoundException(path + " cannot be read");
+            notFound.initCause(e);
+            throw notFound;
+        }
+    }
+
+    /**
+     * Opens a document for reading. Compressed documents are decompressed ahead on another thread, so the
+     * reader can tokenize one chunk while the next is being decompressed.
+     * @param doc The document to be read
+     * @return The contents of the document
+     * @throws FileNotFoundException If the document cannot be opened
+     */
+    public static InputStream openPipelined(File doc) throws FileNotFoundException {
+        InputStream in = open(doc);
+        if (!isCompressed(doc))
+            return in;
+        return new PipelinedInputStream(in);
+    }
+
+    /**
+     * @param doc A document of the corpus
+     * @return True if the document has to be decompressed to be read
+     */
+    public static boolean isCompressed(File doc) {
+        String path = doc.getPath();
+        return path.contains(SEPARATOR) || path.toLowerCase().endsWith(".gz");
+    }
+
+    /**
+     * Reads a stream on a thread of the pool into a bounded queue of chunks, which are handed out by read
+     */
+    private static class PipelinedInputStream extends InputStream {
+        private BlockingQueue<byte[]> chunks;
+        private InputStream in;
+        private volatile boolean closed;
+        private volatile IOException error;
+        private byte[] chunk = new byte[0];
+        private int pos;
+
+        PipelinedInputStream(InputStream in) {
+            this.in = in;
+            chunks = new ArrayBlockingQueue<>(CHUNKS);
+            DECOMPRESS.execute(this::fill);
+        }
+
+        /**
+         * Run on the pool, reads the stream until the end or until the reader closes it
+         */
+        private void fill() {
+            try {
+                byte[] buffer = new byte[CHUNK];
+                int n;
+                while (!closed && (n = in.read(buffer)) >= 0) {
+                    if (n > 0)
+                        chunks.put(Arrays.copyOf(buffer, n));
+                }
+            } catch (IOException e) {
+                error = e;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    //The stream has been read, nothing is lost
+                }
+                //If the reader closed the stream the queue was cleared, so there is always room for the end
+                try {
+                    chunks.put(END);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        /**
+         * @return False if the end of the stream was reached
+         * @throws IOException If the stream could not be read
+         */
+        private boolean next() throws IOException {
+            if (chunk == END)
+                return false;
+            try {
+                chunk = chunks.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+            pos = 0;
+            if (chunk == END && error != null)
+                throw error;
+            return chunk != END;
+        }
+
+        @Override
+        public int read() throws IOException {
+            while (pos == chunk.length) {
+                if (!next())
+                    return -1;
+            }
+            return chunk[pos++] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0)
+                return 0;
+            while (pos == chunk.length) {
+                if (!next())
+                    return -1;
+            }
+            int n = Math.min(len, chunk.length - pos);
+            System.arraycopy(chunk, pos, b, off, n);
+            pos += n;
+            return n;
+        }
+
+        @Override
+        public void close() {
+            //Lets the filling thread finish if it is waiting for room in the queue
+            closed = true;
+            chunks.clear();
+        }
+    }
+}
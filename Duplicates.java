@@ -0,0 +1,277 @@
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The Duplicates class finds the documents of a corpus that are copies or near copies of each other, so that a
+ * search can show one document of each cluster of copies. Each document gets a MinHash signature made from its
+ * groups of SHINGLE words in a row: for each of HASHES hash functions, the smallest hash of any of its groups.
+ * The share of the signature two documents have in common is close to the share of their groups they have in
+ * common. Comparing every pair of signatures would take too long, so the signatures are cut into BANDS bands of
+ * ROWS hashes and a document is only compared to the documents that have a whole band the same as it, which
+ * near copies almost always do. Documents with at least SIMILARITY of their signatures in common are put in the
+ * same cluster, which is named by its first document.
+ * A hash of the words and locations of each document is also kept, so exact copies can be left out of the index.
+ *
+ */
+
+public class Duplicates implements Serializable {
+    private static final long serialVersionUID = 1L;
+    static final int SHINGLE = 3;
+    static final int BANDS = 16;
+    static final int ROWS = 4;
+    static final int HASHES = BANDS * ROWS;
+    static final double SIMILARITY = 0.8;
+    private static final long GOLDEN = 0x9E3779B97F4A7C15L;
+
+    private boolean skipCopies;
+    private int[] cluster;
+    private int[] sizes;
+    private BitSet skipped;
+    private transient List<long[]> signatures;
+    private transient Map<Long, Integer> exact;
+    private Map<Integer, Integer> originals;
+
+    /**
+     * Constructor for the duplicates of a corpus that is about to be indexed
+     * @param skipCopies Exact copies of an earlier document are left out of the index if true
+     */
+    public Duplicates(boolean skipCopies) {
+        this.skipCopies = skipCopies;
+        skipped = new BitSet();
+        signatures = new ArrayList<>();
+        exact = new HashMap<>();
+        originals = new HashMap<>();
+    }
+
+    /**
+     * Adds the next document of the corpus
+     * @param signature The signature of the document's words
+     * @return True if the document is an exact copy of an earlier one and is left out of the index
+     */
+    public boolean add(Signature signature) {
+        int doc = signatures.size();
+        if (signature.words == 0) {
+            signatures.add(null);
+            return false;
+        }
+        Integer original = exact.putIfAbsent(signature.exact, doc);
+        if (original == null || !skipCopies) {
+            signatures.add(signature.hashes());
+            return false;
+        }
+        signatures.add(null);
+        originals.put(doc, original);
+        skipped.set(doc);
+        return true;
+    }
+
+    /**
+     * Puts the documents that were added into clusters. Exact copies are always in the cluster of the document
+     * they copy, and the other documents are compared to the first document in each of their buckets, so a
+     * cluster is found as long as its documents have a band in common with its first document.
+     */
+    public void finish() {
+        int n = signatures.size();
+        int[] parent = new int[n];
+        for (int doc = 0; doc < n; doc++)
+            parent[doc] = doc;
+        Map<Long, Integer> buckets = new HashMap<>();
+        for (int doc = 0; doc < n; doc++) {
+            long[] hashes = signatures.get(doc);
+            if (hashes == null)
+                continue;
+            //The band number is hashed in with the band, so the buckets of every band can share one map
+            for (int band = 0; band < BANDS; band++) {
+                long key = band;
+                for (int row = 0; row < ROWS; row++)
+                    key = key * GOLDEN + hashes[band * ROWS + row];
+                Integer first = buckets.putIfAbsent(key, doc);
+                if (first != null && find(parent, first) != find(parent, doc)
+                        && similarity(signatures.get(first), hashes) >= SIMILARITY)
+                    union(parent, first, doc);
+            }
+        }
+
+        //Exact copies that were left out have no signature, so they join the cluster of the document they copy
+        originals.forEach((doc, original) -> union(parent, original, doc));
+
+        cluster = new int[n];
+        sizes = new int[n];
+        for (int doc = 0; doc < n; doc++) {
+            cluster[doc] = find(parent, doc);
+            sizes[cluster[doc]]++;
+        }
+        signatures = null;
+        exact = null;
+    }
+
+    /**
+     * @param parent The document each document was joined to, or itself if it is the first of its cluster
+     * @param doc A document id
+     * @return The first document of the cluster of the document
+     */
+    private static int find(int[] parent, int doc) {
+        while (parent[doc] != doc) {
+            parent[doc] = parent[parent[doc]];
+            doc = parent[doc];
+        }
+        return doc;
+    }
+
+    /**
+     * Joins the clusters of two documents, keeping the earlier first document as the name of the cluster
+     * @param parent The document each document was joined to
+     * @param a A document id
+     * @param b Another document id
+     */
+    private static void union(int[] parent, int a, int b) {
+        int ra = find(parent, a);
+        int rb = find(parent, b);
+        if (ra < rb)
+            parent[rb] = ra;
+        else
+            parent[ra] = rb;
+    }
+
+    /**
+     * @param a The signature of a document
+     * @param b The signature of another document
+     * @return The share of the hashes that are the same in both signatures
+     */
+    private static double similarity(long[] a, long[] b) {
+        int same = 0;
+        for (int i = 0; i < HASHES; i++) {
+            if (a[i] == b[i])
+                same++;
+        }
+        return (double) same / HASHES;
+    }
+
+    /**
+     * @return True if exact copies were left out of the index
+     */
+    public boolean skipsCopies() {
+        return skipCopies;
+    }
+
+    /**
+     * @param doc A document id
+     * @return The id of the first document of the cluster the document is in
+     */
+    public int cluster(int doc) {
+        return cluster[doc];
+    }
+
+    /**
+     * @param doc A document id
+     * @return The number of documents in the cluster the document is in, counting itself
+     */
+    public int size(int doc) {
+        return sizes[cluster[doc]];
+    }
+
+    /**
+     * @param doc A document id
+     * @return True if the document is an exact copy that was left out of the index
+     */
+    public boolean isSkipped(int doc) {
+        return skipped.get(doc);
+    }
+
+    /**
+     * @param doc A document id
+     * @return The document the document is an exact copy of if it was left out of the index, otherwise itself
+     */
+    public int original(int doc) {
+        return originals.getOrDefault(doc, doc);
+    }
+
+    /**
+     * @return The number of clusters with more than one document
+     */
+    public int clusters() {
+        int count = 0;
+        for (int doc = 0; doc < sizes.length; doc++) {
+            if (sizes[doc] > 1)
+                count++;
+        }
+        return count;
+    }
+
+    /**
+     * @return The number of exact copies that were left out of the index
+     */
+    public int skipped() {
+        return skipped.cardinality();
+    }
+
+    /**
+     * @param z A number
+     * @return The number with its bits mixed, so numbers that are close together have unrelated hashes
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * The signature of one document, which is worked out as its words are read
+     */
+    public static class Signature {
+        private long[] mins = new long[HASHES];
+        private int[] window = new int[SHINGLE];
+        private int words;
+        private long exact;
+
+        /**
+         * Constructor for the signature of a document before any of its words are read
+         */
+        public Signature() {
+            Arrays.fill(mins, Long.MAX_VALUE);
+        }
+
+        /**
+         * Adds the next word of the document
+         * @param id The id of the word in the term dictionary
+         * @param location The location of the word in the document
+         */
+        public void add(int id, int location) {
+            exact = exact * GOLDEN + mix((long) id << 32 | location);
+            window[words % SHINGLE] = id;
+            words++;
+            if (words >= SHINGLE)
+                shingle(SHINGLE);
+        }
+
+        /**
+         * Hashes the last words read as a group and keeps the smallest hash of each hash function
+         * @param n The number of words in the group
+         */
+        private void shingle(int n) {
+            long group = 0;
+            for (int k = 0; k < n; k++)
+                group = group * GOLDEN + window[(words - n + k) % SHINGLE];
+            group = mix(group);
+            for (int i = 0; i < HASHES; i++) {
+                long hash = mix(group + i * GOLDEN);
+                if (hash < mins[i])
+                    mins[i] = hash;
+            }
+        }
+
+        /**
+         * @return The smallest hash of each hash function, a document with fewer words than a group is one group
+         */
+        private long[] hashes() {
+            if (words < SHINGLE)
+                shingle(words);
+            return mins;
+        }
+    }
+}
@@ -0,0 +1,266 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+
+/**
+ * The FederatedIndex class searches several named collections together. Each collection has its own inverted
+ * index stored in its own folder, so an index is only made again when its own collection changes. A search is
+ * started on every collection in parallel, and the hits are returned collection by collection, tagged with the
+ * name of the collection they came from.
+ *
+ */
+
+public class FederatedIndex extends Searcher {
+    private static final ExecutorService POOL = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(), r -> {
+                Thread t = new Thread(r, "Federated search");
+                t.setDaemon(true);
+                return t;
+            });
+
+    private Map<String, InvertedIndex> collections;
+
+    /**
+     * Constructor that makes or reads in the index of every collection in parallel
+     * @param walkers The name of each collection and the walker that finds its files
+     */
+    public FederatedIndex(Map<String, CorpusWalker> walkers) {
+        this(walkers, false);
+    }
+
+    /**
+     * Constructor that makes or reads in the index of every collection in parallel
+     * @param walkers The name of each collection and the walker that finds its files
+     * @param offHeap Keeps the index of every collection outside of the heap if true
+     */
+    public FederatedIndex(Map<String, CorpusWalker> walkers, boolean offHeap) {
+        this(walkers, offHeap, false, false);
+    }
+
+    /**
+     * Constructor that makes or reads in the index of every collection in parallel, and can look for copies of
+     * documents within each collection
+     * @param walkers The name of each collection and the walker that finds its files
+     * @param offHeap Keeps the index of every collection outside of the heap if true
+     * @param dedup Finds the clusters of copies and shows one document of each if true
+     * @param skipCopies Leaves exact copies of an earlier document out of the index if true, needs dedup
+     */
+    public FederatedIndex(Map<String, CorpusWalker> walkers, boolean offHeap, boolean dedup, boolean skipCopies) {
+        Map<String, Future<InvertedIndex>> futures = new LinkedHashMap<>();
+        walkers.forEach((name, walker) ->
+            futures.put(name, POOL.submit(() -> new InvertedIndex(name, walker, offHeap, dedup, skipCopies))));
+
+        collections = new LinkedHashMap<>();
+        futures.forEach((name, future) -> collections.put(name, get(future)));
+    }
+
+    /**
+     * @return The index of each collection by name
+     */
+    public Map<String, InvertedIndex> getCollections() {
+        return collections;
+    }
+
+    @Override
+    public Iterator<SearchResult> findWord(String w, boolean useStemmed) {
+        return gather(index -> index.findWord(w, useStemmed));
+    }
+
+    @Override
+    public Iterator<SearchResult> findWords(String query, boolean useStemmed) {
+        return gather(index -> index.findWords(query, useStemmed));
+    }
+
+    @Override
+    public Iterator<SearchResult> findSimilarWords(String query) {
+        return gather(index -> index.findSimilarWords(query));
+    }
+
+    /**
+     * Counts the words of a document in one collection. The document can be given as collection:name, otherwise
+     * the first collection that has a document with the name is used.
+     * @param doc The name of the document to be searched for
+     * @return Iterator over the words in the document and their counts, null if no collection has the document
+     */
+    @Override
+    public Iterator<Map.Entry<String, Integer>> findDoc(String doc) {
+        int colon = doc.indexOf(':');
+        if (colon > 0 && collections.containsKey(doc.substring(0, colon)))
+            return collections.get(doc.substring(0, colon)).findDoc(doc.substring(colon + 1));
+
+        for (InvertedIndex index : collections.values()) {
+            Iterator<Map.Entry<String, Integer>> words = index.findDoc(doc);
+            if (words != null)
+                return words;
+        }
+        return null;
+    }
+
+    /**
+     * Deletes a document from one collection. The document can be given as collection:name, otherwise the first
+     * collection that has a document with the name is used.
+     * @param doc The name of the document
+     * @return False if no collection has the document
+     */
+    @Override
+    public boolean delete(String doc) {
+        return forDoc(doc, InvertedIndex::delete);
+    }
+
+    /**
+     * Reads a document of one collection again. The document can be given as collection:name, otherwise the
+     * first collection that has a document with the name is used.
+     * @param doc The name of the document
+     * @return False if no collection has the document
+     */
+    @Override
+    public boolean update(String doc) {
+        return forDoc(doc, InvertedIndex::update);
+    }
+
+    /**
+     * @param doc The name of a document, which can start with the name of its collection and a colon
+     * @param action Deletes or updates the document in one collection, returning false if it is not there
+     * @return False if no collection has the document
+     */
+    private boolean forDoc(String doc, BiPredicate<InvertedIndex, String> action) {
+        int colon = doc.indexOf(':');
+        if (colon > 0 && collections.containsKey(doc.substring(0, colon)))
+            return action.test(collections.get(doc.substring(0, colon)), doc.substring(colon + 1));
+        for (InvertedIndex index : collections.values()) {
+            if (action.test(index, doc))
+                return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void flush() {
+        collections.values().forEach(InvertedIndex::flush);
+    }
+
+    @Override
+    public int compact() {
+        return collections.values().stream().mapToInt(InvertedIndex::compact).sum();
+    }
+
+    @Override
+    public void makeStemmedIndex() {
+        List<Future<?>> futures = new ArrayList<>();
+        collections.values().forEach(index -> futures.add(POOL.submit(index::makeStemmedIndex)));
+        futures.forEach(FederatedIndex::get);
+    }
+
+    @Override
+    public void close() {
+        collections.values().forEach(InvertedIndex::close);
+    }
+
+    @Override
+    public void setExpansions(int limit) {
+        collections.values().forEach(index -> index.setExpansions(limit));
+    }
+
+    @Override
+    public void setInfix(boolean infix) {
+        collections.values().forEach(index -> index.setInfix(infix));
+    }
+
+    /**
+     * Turns the infix index of one collection on or off
+     * @param collection The name of the collection
+     * @param infix Makes the infix index ahead of time if true
+     * @return False if there is no collection with the name
+     */
+    public boolean setInfix(String collection, boolean infix) {
+        InvertedIndex index = collections.get(collection);
+        if (index == null)
+            return false;
+        index.setInfix(infix);
+        return true;
+    }
+
+    @Override
+    public void setSuggestions(boolean suggestions) {
+        collections.values().forEach(index -> index.setSuggestions(suggestions));
+    }
+
+    /**
+     * Asks each collection for a suggestion in turn
+     * @param query A word or a query string as given by the user
+     * @return The suggestion of the first collection that has one, null if none of them do
+     */
+    @Override
+    public String suggest(String query) {
+        for (InvertedIndex index : collections.values()) {
+            String suggestion = index.suggest(query);
+            if (suggestion != null)
+                return suggestion;
+        }
+        return null;
+    }
+
+    /**
+     * Starts the search on every collection in parallel. Looking up the terms and finding the first hit is done
+     * on the pool, and the rest of the hits are made as the returned iterator reaches each collection.
+     * @param search The search to run on each collection
+     * @return Iterator over the hits of every collection, tagged with the collection's name
+     */
+    private Iterator<SearchResult> gather(Function<InvertedIndex, Iterator<SearchResult>> search) {
+        List<String> names = new ArrayList<>();
+        List<Future<Iterator<SearchResult>>> futures = new ArrayList<>();
+        //The stages run on the pool are added to the times of the search that started them
+        QueryMetrics.Trace trace = QueryMetrics.current();
+        collections.forEach((name, index) -> {
+            names.add(name);
+            futures.add(POOL.submit(() -> QueryMetrics.within(trace, () -> search.apply(index))));
+        });
+
+        return new Iterator<SearchResult>() {
+            private int next = 0;
+            private Iterator<SearchResult> hits;
+
+            @Override
+            public boolean hasNext() {
+                while (hits == null || !hits.hasNext()) {
+                    if (next == futures.size())
+                        return false;
+                    hits = get(futures.get(next++));
+                }
+                return true;
+            }
+
+            @Override
+            public SearchResult next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                return hits.next().inCollection(names.get(next - 1));
+            }
+        };
+    }
+
+    /**
+     * Waits for a task on the pool to finish
+     * @param future The task
+     * @return The result of the task
+     */
+    private static <T> T get(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
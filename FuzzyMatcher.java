@@ -0,0 +1,154 @@
+import java.util.Arrays;
+
+/**
+ * The FuzzyMatcher class finds the words of the dictionary that are within a few edits of a word, where an edit
+ * is putting in, taking out or changing one letter. It runs a Levenshtein automaton over the words in sorted
+ * order. The state of the automaton after reading the start of a word is the row of edit distances between that
+ * start and every start of the searched word, so words that share their start with the word before them reuse
+ * its rows. Once every distance in a row is over the limit no word with that start can match, and the words
+ * with it are skipped with a binary search instead of being read.
+ *
+ */
+
+public class FuzzyMatcher {
+    static final int MAX_EDITS = 2;
+
+    /**
+     * @param term A term of a query
+     * @return True if the term is a fuzzy term, which ends in ~ and the number of edits allowed
+     */
+    public static boolean isFuzzy(String term) {
+        return term.indexOf('~') >= 0;
+    }
+
+    /**
+     * Finds the words of the corpus within a number of edits of a word
+     * @param terms The dictionary of the index
+     * @param word The word, formatted the way words are kept in the index
+     * @param edits The largest number of edits allowed, at most MAX_EDITS
+     * @return The ids of the words at each distance, the word itself is at distance 0
+     */
+    public static int[][] match(Terms terms, String word, int edits) {
+        int m = word.length();
+        int[][] found = new int[edits + 1][];
+        int[] counts = new int[edits + 1];
+        for (int d = 0; d <= edits; d++)
+            found[d] = new int[4];
+
+        //rows[k] is the state after reading the first k letters of a word. A word more than the edits longer
+        //than the searched word always stops before it runs out of rows.
+        int[][] rows = new int[m + edits + 2][];
+        rows[0] = new int[m + 1];
+        for (int j = 0; j <= m; j++)
+            rows[0][j] = j;
+        char[] letters = word.chars().distinct().sorted().collect(StringBuilder::new,
+                StringBuilder::appendCodePoint, StringBuilder::append).toString().toCharArray();
+        String prev = "";
+        int n = terms.sortedSize();
+        int i = 0;
+        while (i < n) {
+            int id = terms.sortedId(i);
+            String term = terms.term(id);
+            int k = 0;
+            int common = Math.min(prev.length(), term.length());
+            while (k < common && prev.charAt(k) == term.charAt(k))
+                k++;
+
+            //Reads the rest of the word, stopping if no word with the start read so far can match
+            boolean dead = false;
+            for (; k < term.length() && !dead; k++)
+                dead = step(rows, k, term.charAt(k), word, edits);
+            if (!dead) {
+                int distance = rows[term.length()][m];
+                if (distance <= edits && id < terms.stemmed()) {
+                    if (counts[distance] == found[distance].length)
+                        found[distance] = Arrays.copyOf(found[distance], 2 * counts[distance]);
+                    found[distance][counts[distance]++] = id;
+                }
+                prev = term;
+                i++;
+                continue;
+            }
+
+            //Skips to the first word that the automaton does not stop on straight away
+            String next = next(rows, term, k - 1, word, edits, letters);
+            if (next == null)
+                break;
+            prev = next.substring(0, next.length() - 1);
+            if (surrogate(next))
+                i++;
+            else
+                i = terms.lowerBound(next, i + 1);
+        }
+
+        for (int d = 0; d <= edits; d++)
+            found[d] = Arrays.copyOf(found[d], counts[d]);
+        return found;
+    }
+
+    /**
+     * Finds the smallest start of a word that comes after every word starting with the first k + 1 letters of
+     * a word the automaton stopped on, and that the automaton does not stop on. Every letter that is not in the
+     * searched word moves the automaton the same way, and never to a better state than a letter of the word, so
+     * only the next letter and the letters of the word have to be tried.
+     * @param rows The states of the automaton, which are worked out up to k
+     * @param term The word the automaton stopped on
+     * @param k The position of the letter the automaton stopped on
+     * @param word The searched word
+     * @param edits The largest number of edits allowed
+     * @param letters The letters of the searched word in sorted order
+     * @return The start of the next word to look at, null if no word after term can match
+     */
+    private static String next(int[][] rows, String term, int k, String word, int edits, char[] letters) {
+        for (int depth = k; depth >= 0; depth--) {
+            char c = term.charAt(depth);
+            if (c == Character.MAX_VALUE)
+                continue;
+            if (!step(rows, depth, (char) (c + 1), word, edits))
+                return term.substring(0, depth) + (char) (c + 1);
+            for (char letter : letters) {
+                if (letter > c && !step(rows, depth, letter, word, edits))
+                    return term.substring(0, depth) + letter;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param start The start of a word
+     * @return True if the start has half of a surrogate pair, which cannot be searched for in every dictionary
+     */
+    private static boolean surrogate(String start) {
+        char last = start.charAt(start.length() - 1);
+        return Character.isSurrogate(last)
+                || start.length() > 1 && Character.isHighSurrogate(start.charAt(start.length() - 2));
+    }
+
+    /**
+     * Moves the automaton one letter further along a word
+     * @param rows The states of the automaton for each start of the word, the state at k is already worked out
+     * @param k The number of letters read so far
+     * @param c The next letter
+     * @param word The searched word
+     * @param edits The largest number of edits allowed
+     * @return True if no word with the letters read so far can be within the edits of the searched word
+     */
+    private static boolean step(int[][] rows, int k, char c, String word, int edits) {
+        int m = word.length();
+        int[] above = rows[k];
+        int[] row = rows[k + 1];
+        if (row == null) {
+            row = new int[m + 1];
+            rows[k + 1] = row;
+        }
+        row[0] = k + 1;
+        int min = row[0];
+        for (int j = 1; j <= m; j++) {
+            int change = above[j - 1] + (word.charAt(j - 1) == c ? 0 : 1);
+            row[j] = Math.min(change, Math.min(above[j], row[j - 1]) + 1);
+            if (row[j] < min)
+                min = row[j];
+        }
+        return min > edits;
+    }
+}
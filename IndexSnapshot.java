@@ -0,0 +1,307 @@
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * One generation of the inverted index. A snapshot is never changed after it is made, so any number of searches
+ * can read from it without locking. Rebuilding the index makes a new snapshot which replaces the old one all at
+ * once, and searches that were already running keep reading the snapshot they started with.
+ * Deleting a document makes a snapshot that shares everything with the old one except its set of deleted
+ * documents, which searches leave out. Their words stay in the lists until the index is compacted.
+ *
+ */
+
+class IndexSnapshot {
+    private final long generation;
+    private final File[] corpus;
+    private final long fingerprint;
+    private final Map<File, long[]> checkpoints;
+    private final Terms terms;
+    private final List<List<Map.Entry<File, Integer>>> index;
+    private final Lazy<Map<Integer, DocBitmap>> bitmaps;
+    private final List<List<Map.Entry<File, Integer>>> stemmedIndex;
+    private final Lazy<Map<Integer, DocBitmap>> stemmedBitmaps;
+    private final Map<File, Integer> docIds;
+    private final Lazy<Map<String, int[]>> names;
+    private final Lazy<WildcardIndex> wildcards;
+    private final Duplicates duplicates;
+    private final DocBitmap deleted;
+
+    /**
+     * Constructor for a snapshot without a stemmed index. The dictionary, maps and lists given must not be
+     * changed afterwards.
+     * @param generation The number of times the index has been built before this snapshot
+     * @param corpus The files that were indexed, the position of each file is its document id
+     * @param fingerprint The fingerprint of the files when they were indexed
+     * @param checkpoints The byte offsets of every so many words in each large document
+     * @param terms The ids of the words of the index and their stems
+     * @param index The inverted index, the list of each word is at the word's id
+     * @param bitmaps Gets the document sets of the frequent words by id the first time they are needed
+     * @param duplicates The clusters of copies of documents, null if they were not looked for
+     */
+    IndexSnapshot(long generation, File[] corpus, long fingerprint, Map<File, long[]> checkpoints,
+            Terms terms, List<List<Map.Entry<File, Integer>>> index,
+            Supplier<Map<Integer, DocBitmap>> bitmaps, Duplicates duplicates) {
+        this(generation, corpus, fingerprint, checkpoints, terms, index, new Lazy<>(bitmaps), null, null,
+                docIds(corpus), new Lazy<>(() -> names(corpus)), new Lazy<>(() -> new WildcardIndex(terms)),
+                duplicates, new DocBitmap());
+    }
+
+    private IndexSnapshot(long generation, File[] corpus, long fingerprint, Map<File, long[]> checkpoints,
+            Terms terms, List<List<Map.Entry<File, Integer>>> index, Lazy<Map<Integer, DocBitmap>> bitmaps,
+            List<List<Map.Entry<File, Integer>>> stemmedIndex, Lazy<Map<Integer, DocBitmap>> stemmedBitmaps,
+            Map<File, Integer> docIds, Lazy<Map<String, int[]>> names, Lazy<WildcardIndex> wildcards,
+            Duplicates duplicates, DocBitmap deleted) {
+        this.generation = generation;
+        this.corpus = corpus;
+        this.fingerprint = fingerprint;
+        this.checkpoints = Collections.unmodifiableMap(checkpoints);
+        this.terms = terms;
+        this.index = unmodifiable(index);
+        this.bitmaps = bitmaps;
+        this.stemmedIndex = stemmedIndex == null ? null : unmodifiable(stemmedIndex);
+        this.stemmedBitmaps = stemmedBitmaps;
+        this.docIds = docIds;
+        this.names = names;
+        this.wildcards = wildcards;
+        this.duplicates = duplicates;
+        this.deleted = deleted;
+    }
+
+    /**
+     * @param stemmedIndex The stemmed index made from this snapshot's index
+     * @param stemmedBitmaps Gets the document sets of the frequent stems by id the first time they are needed
+     * @return A snapshot of the same generation that also has the stemmed index
+     */
+    IndexSnapshot withStemmedIndex(List<List<Map.Entry<File, Integer>>> stemmedIndex,
+            Supplier<Map<Integer, DocBitmap>> stemmedBitmaps) {
+        return new IndexSnapshot(generation, corpus, fingerprint, checkpoints, terms, index, bitmaps, stemmedIndex,
+                new Lazy<>(stemmedBitmaps), docIds, names, wildcards, duplicates, deleted);
+    }
+
+    /**
+     * @param deleted The documents that are deleted, which must not be changed afterwards
+     * @return A snapshot of the same generation whose searches leave out the documents
+     */
+    IndexSnapshot withDeleted(DocBitmap deleted) {
+        return new IndexSnapshot(generation, corpus, fingerprint, checkpoints, terms, index, bitmaps, stemmedIndex,
+                stemmedBitmaps, docIds, names, wildcards, duplicates, deleted);
+    }
+
+    /**
+     * @param corpus The files that were indexed
+     * @return The document id of each file
+     */
+    private static Map<File, Integer> docIds(File[] corpus) {
+        Map<File, Integer> docIds = new HashMap<>();
+        for (int i = 0; i < corpus.length; i++)
+            docIds.put(corpus[i], i);
+        return Collections.unmodifiableMap(docIds);
+    }
+
+    /**
+     * @param corpus The files that were indexed
+     * @return The document ids of the files with each name, in increasing order
+     */
+    private static Map<String, int[]> names(File[] corpus) {
+        Map<String, int[]> names = new HashMap<>();
+        for (int i = 0; i < corpus.length; i++) {
+            int[] ids = names.get(corpus[i].getName());
+            ids = ids == null ? new int[1] : Arrays.copyOf(ids, ids.length + 1);
+            ids[ids.length - 1] = i;
+            names.put(corpus[i].getName(), ids);
+        }
+        return names;
+    }
+
+    /**
+     * @return The number of times the index has been built before this snapshot
+     */
+    long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * @return The files that were indexed, which must not be changed
+     */
+    File[] getCorpus() {
+        return corpus;
+    }
+
+    /**
+     * @return The document id of each file of the corpus, which is its position in the corpus
+     */
+    Map<File, Integer> getDocIds() {
+        return docIds;
+    }
+
+    /**
+     * @param doc A document of the corpus
+     * @return The document id of the file, -1 if it is not in the corpus
+     */
+    int getDocId(File doc) {
+        Integer id = docIds.get(doc);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * @param name The name of a file, without its directory
+     * @return The document ids of the files of the corpus with the name, in increasing order, which must not be
+     * changed
+     */
+    int[] getDocsNamed(String name) {
+        int[] ids = names.get().get(name);
+        return ids == null ? new int[0] : ids;
+    }
+
+    /**
+     * @return The documents that were deleted since the index was made or last compacted
+     */
+    DocBitmap getDeleted() {
+        return deleted;
+    }
+
+    /**
+     * @param id A document id
+     * @return True if the document was deleted, its words are still in the lists but are not searched
+     */
+    boolean isDeleted(int id) {
+        return deleted.contains(id);
+    }
+
+    /**
+     * @return The number of documents of the corpus that are not deleted
+     */
+    int liveDocs() {
+        return corpus.length - deleted.cardinality();
+    }
+
+    /**
+     * @return The fingerprint of the files when they were indexed, stored with the index to tell if it is stale
+     */
+    long getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * @param doc A document of the corpus
+     * @return The byte offsets of every so many words in the document, null if the document is small
+     */
+    long[] getCheckpoints(File doc) {
+        return checkpoints.get(doc);
+    }
+
+    /**
+     * @return The byte offsets of every so many words in each large document, used when storing the index
+     */
+    Map<File, long[]> getCheckpoints() {
+        return checkpoints;
+    }
+
+    /**
+     * @return The ids of the words of the index and their stems
+     */
+    Terms getTerms() {
+        return terms;
+    }
+
+    /**
+     * @param useStemmed Indicates which index to return, true - stemmed index, false - inverted index
+     * @return The index by id, or null if the stemmed index was asked for and has not been made yet
+     */
+    List<List<Map.Entry<File, Integer>>> getIndex(boolean useStemmed) {
+        return useStemmed ? stemmedIndex : index;
+    }
+
+    /**
+     * Gets the document sets of the frequent words, loading them the first time they are asked for
+     * @param useStemmed Indicates which index the words are from, true - stemmed index, false - inverted index
+     * @return The set of documents of each frequent word by id
+     */
+    Map<Integer, DocBitmap> getBitmaps(boolean useStemmed) {
+        return useStemmed ? stemmedBitmaps.get() : bitmaps.get();
+    }
+
+    /**
+     * Gets the index used to expand terms with wildcards, making it from the dictionary the first time it is
+     * asked for
+     * @return The index of the groups of letters of the words
+     */
+    WildcardIndex getWildcards() {
+        return wildcards.get();
+    }
+
+    /**
+     * @return The clusters of copies of documents, null if they were not looked for
+     */
+    Duplicates getDuplicates() {
+        return duplicates;
+    }
+
+    /**
+     * Frees the parts of the snapshot that are kept outside of the heap. Nothing is freed for a snapshot kept on
+     * the heap, which the garbage collector frees once no search is reading it.
+     */
+    void close() {
+        if (terms instanceof OffHeapTerms)
+            ((OffHeapTerms) terms).close();
+        if (index instanceof OffHeapPostings)
+            ((OffHeapPostings) index).close();
+        if (stemmedIndex instanceof OffHeapPostings)
+            ((OffHeapPostings) stemmedIndex).close();
+    }
+
+    /**
+     * @param index An index by id
+     * @return The index if it is kept outside of the heap, which cannot be changed anyway, otherwise a view of
+     * the index that cannot be changed
+     */
+    private static List<List<Map.Entry<File, Integer>>> unmodifiable(List<List<Map.Entry<File, Integer>>> index) {
+        if (index instanceof OffHeapPostings)
+            return index;
+        return Collections.unmodifiableList(index);
+    }
+
+    /**
+     * @param id The id of a word, or of a stem for the stemmed index
+     * @param useStemmed Indicates which index to use, true - stemmed index, false - inverted index
+     * @return The list of files and locations of the word, null if the word is not in the index
+     */
+    List<Map.Entry<File, Integer>> getPostings(int id, boolean useStemmed) {
+        List<List<Map.Entry<File, Integer>>> postings = getIndex(useStemmed);
+        if (id < 0 || id >= postings.size())
+            return null;
+        return postings.get(id);
+    }
+
+    /**
+     * A value that is only worked out the first time it is asked for, and then kept
+     */
+    private static class Lazy<T> {
+        private Supplier<T> loader;
+        private volatile T value;
+
+        Lazy(Supplier<T> loader) {
+            this.loader = loader;
+        }
+
+        T get() {
+            T v = value;
+            if (v == null) {
+                synchronized (this) {
+                    v = value;
+                    if (v == null) {
+                        v = loader.get();
+                        value = v;
+                        loader = null;
+                    }
+                }
+            }
+            return v;
+        }
+    }
+}
@@ -1,19 +1,30 @@
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.PrintWriter;
 import java.util.AbstractMap;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Hashtable;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.ListIterator;
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Scanner;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.StringJoiner;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * The InvertedIndex class creates the index and allows for searches to be made on it.
@@ -21,326 +32,1148 @@ import java.util.Set;
  *
  */
 
-public class InvertedIndex {
-    private String dir;
-    private File[] corpus;
-    private Hashtable<String, LinkedList<Map.Entry<File, Integer>>> index;
-    private Hashtable<Integer, String> stopList;
-    private Hashtable<String, LinkedList<Map.Entry<File, Integer>>> stemmedIndex;
+public class InvertedIndex extends Searcher {
+    static final int CHECKPOINT = 1024;
+    private static final String INDEX_FILE = "InvertedIndex.txt";
+    private static final String STEMMED_FILE = "StemmedIndex.txt";
+    private static final String CHECKPOINT_FILE = "Checkpoints.txt";
+    private static final String TERMS_FILE = "Terms.txt";
+    private static final String CORPUS_FILE = "Corpus.txt";
+    private static final String BITMAP_FILE = "Bitmaps.txt";
+    private static final String STEMMED_BITMAP_FILE = "StemmedBitmaps.txt";
+    private static final String SPELLING_FILE = "Spelling.txt";
+    private static final String DUPLICATES_FILE = "Duplicates.txt";
+    private static final String DELETED_FILE = "Deleted.txt";
+    private static final int BITMAP_RATIO = 64;
+    static final int EXPANSIONS = 256;
+    private static final Analyzer.Normalize WORDS = new Analyzer.Normalize(false);
+    private static final Analyzer.Normalize TERMS = new Analyzer.Normalize(true);
+    
+    private String name;
+    private CorpusWalker walker;
+    private String data;
+    private Analyzer.StopWords stopWords;
+    private Analyzer analyzer;
+    private boolean offHeap;
+    private boolean dedup;
+    private boolean skipCopies;
+    private int expansions = EXPANSIONS;
+    private volatile boolean infix;
+    private volatile boolean suggestions;
+    private SpellIndex spelling;
+    private long spellingGeneration = -1;
+    private volatile Map<File, String> partlyRead = Collections.emptyMap();
+    private Set<File> deleted;
+    private boolean deletedChanged;
+    private AtomicReference<IndexSnapshot> current;
     
     /**
      * Constructor that stores the directory path, gets the file list and stop list, and makes the index.
+     * The index is stored directly in the Data folder.
      * @param dir The path of the folder containing the files that will be indexed
      */
     public InvertedIndex(String dir) {
-        this.dir = dir;
-        corpus = new File(dir).listFiles();
-        stopList = new StopList().getStopList();
-        makeIndex();
+        this(null, dir);
+    }
+    
+    /**
+     * Constructor for a named collection, whose index is stored in its own folder inside the Data folder so
+     * collections do not overwrite each other's index.
+     * @param name The name of the collection, or null to store the index directly in the Data folder
+     * @param dir The path of the folder containing the files that will be indexed
+     */
+    public InvertedIndex(String name, String dir) {
+        this(name, new CorpusWalker(dir));
+    }
+    
+    /**
+     * Constructor for a named collection whose files are found by the given walker, which searches every
+     * subdirectory and can filter the files that are indexed.
+     * @param name The name of the collection, or null to store the index directly in the Data folder
+     * @param walker Finds the files that will be indexed
+     */
+    public InvertedIndex(String name, CorpusWalker walker) {
+        this(name, walker, false);
+    }
+    
+    /**
+     * Constructor that can keep the index outside of the java heap. An index kept outside of the heap is made
+     * on the heap first and then copied out, after which the garbage collector no longer has to scan it, so
+     * pauses do not grow with the size of the index. Its memory is freed by close.
+     * @param name The name of the collection, or null to store the index directly in the Data folder
+     * @param walker Finds the files that will be indexed
+     * @param offHeap Keeps the lists and the term dictionary outside of the heap if true
+     */
+    public InvertedIndex(String name, CorpusWalker walker, boolean offHeap) {
+        this(name, walker, offHeap, false, false);
+    }
+    
+    /**
+     * Constructor that can also look for documents that are copies or near copies of each other while they are
+     * indexed. A search then shows only the first document of each cluster of copies it finds, and exact copies
+     * can be left out of the index altogether, which saves the time and space of indexing them again.
+     * @param name The name of the collection, or null to store the index directly in the Data folder
+     * @param walker Finds the files that will be indexed
+     * @param offHeap Keeps the lists and the term dictionary outside of the heap if true
+     * @param dedup Finds the clusters of copies and shows one document of each if true
+     * @param skipCopies Leaves exact copies of an earlier document out of the index if true, needs dedup
+     */
+    public InvertedIndex(String name, CorpusWalker walker, boolean offHeap, boolean dedup, boolean skipCopies) {
+        this.name = name;
+        this.walker = walker;
+        this.offHeap = offHeap;
+        this.dedup = dedup;
+        this.skipCopies = dedup && skipCopies;
+        data = name == null ? "./Data" : "./Data/" + name;
+        stopWords = new Analyzer.StopWords(new StopList());
+        analyzer = new Analyzer(WORDS, stopWords);
+        deleted = readDeleted();
+        current = new AtomicReference<>(makeIndex(0, true));
     }
     
     /**
-     * Creates a the Inverted Index in a Hashtable structure that takes in the word and a list containing
-     * the file and location of each occurrence of the word in the corpus.
+     * @return The name of the collection, null if it has none
      */
-    private void makeIndex() {
-        if (readIndexFromStorage(false)) {
+    public String getName() {
+        return name;
+    }
+    
+    /**
+     * Indexes the directory again, ignoring the index in storage. The new index is made while searches keep
+     * using the current one, and then replaces it all at once. Searches may still be reading the old index, so
+     * if it is kept outside of the heap its memory is freed by the garbage collector once they finish. Deleted
+     * documents stay out of the new index even if they are still in the directory.
+     */
+    public synchronized void rebuild() {
+        setSnapshot(makeIndex(current.get().getGeneration() + 1, false));
+    }
+    
+    /**
+     * Deletes a document from the index. Its bit is set in a copy of the set of deleted documents, which only
+     * copies the part of the set holding the bit, and searches use the set to skip its entries, so no list is
+     * copied. The paths of the deleted documents are written to storage by flush, so the index read in later
+     * or made again still leaves them out. Their entries are only taken out of the lists when the index is
+     * compacted or made again.
+     * @param doc The name or path of the document
+     * @return False if the document is not in the corpus or was already deleted
+     */
+    @Override
+    public synchronized boolean delete(String doc) {
+        File file = findFile(current.get(), doc, false);
+        if (file == null)
+            return false;
+        tombstone(file);
+        deleted.add(file);
+        deletedChanged = true;
+        return true;
+    }
+
+    /**
+     * Writes the paths of the deleted documents to storage if any were deleted since they were last written
+     */
+    @Override
+    public synchronized void flush() {
+        if (!deletedChanged)
             return;
+        writeIndexForStorage(deleted, DELETED_FILE, current.get().getFingerprint());
+        deletedChanged = false;
+    }
+
+    /**
+     * @return The paths of the documents deleted from the collection, kept in storage so they stay deleted
+     */
+    private Set<File> readDeleted() {
+        Object stored = readIndexFromStorage(DELETED_FILE, 0, true);
+        Set<File> files = new HashSet<>();
+        if (stored instanceof Set) {
+            for (Object file : (Set<?>) stored) {
+                if (file instanceof File)
+                    files.add((File) file);
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Reads a document that has changed again. Its old words are deleted straight away so searches stop
+     * showing them, and then the index is compacted, which puts in its new words. Only the document itself is
+     * read again, the words of the other documents are taken from the lists.
+     * A deleted document is put back, and its path is taken out of the deleted documents in storage. If it was
+     * already taken out of the corpus by compacting or making the index, the index is made again with it.
+     * @param doc The name or path of the document
+     * @return False if the document is not in the corpus and was not deleted from it
+     */
+    @Override
+    public synchronized boolean update(String doc) {
+        IndexSnapshot snapshot = current.get();
+        File file = findFile(snapshot, doc, true);
+        if (file == null)
+            file = findDeleted(doc);
+        if (file == null)
+            return false;
+        if (deleted.remove(file)) {
+            deletedChanged = true;
+            flush();
+            if (snapshot.getDocId(file) < 0) {
+                rebuild();
+                return true;
+            }
+        }
+        tombstone(file);
+        compact(Collections.singleton(file));
+        return true;
+    }
+
+    /**
+     * Finds a deleted document by its path from the corpus directory, or by its name
+     * @param doc The name or path of the document
+     * @return The file of the document, null if no document with the name or path was deleted
+     */
+    private File findDeleted(String doc) {
+        File path = new File(walker.getDir(), doc);
+        if (deleted.contains(path))
+            return path;
+        for (File file : deleted) {
+            if (file.getName().equals(doc))
+                return file;
+        }
+        return null;
+    }
+
+    /**
+     * Takes the entries of the deleted documents out of the lists and writes the smaller index to storage. The
+     * documents that are left are given new ids in the same order, and the words that are only in deleted
+     * documents are taken out of the dictionary. When copies are looked for, the clusters need the signatures of
+     * every document, so the documents that are left are read again instead.
+     * @return The number of deleted documents taken out
+     */
+    @Override
+    public synchronized int compact() {
+        flush();
+        return compact(Collections.emptySet());
+    }
+
+    /**
+     * Sets the bit of a document in the set of deleted documents of the current snapshot. A stemmed index may
+     * be added to the snapshot at the same time, so the snapshot is only replaced if it is still current.
+     * @param file A document of the corpus
+     * @return The snapshot with the document deleted
+     */
+    private IndexSnapshot tombstone(File file) {
+        while (true) {
+            IndexSnapshot snapshot = current.get();
+            IndexSnapshot next = snapshot.withDeleted(snapshot.getDeleted().with(snapshot.getDocId(file)));
+            if (current.compareAndSet(snapshot, next))
+                return next;
         }
+    }
+
+    /**
+     * Makes the index again without the deleted documents, reading the documents that changed again
+     * @param changed Documents that are deleted in the current snapshot but are indexed again from their files
+     * @return The number of documents taken out
+     */
+    private int compact(Set<File> changed) {
+        IndexSnapshot snapshot = current.get();
+        File[] corpus = snapshot.getCorpus();
+        List<File> live = new ArrayList<>();
+        for (int i = 0; i < corpus.length; i++) {
+            if (!snapshot.isDeleted(i) || changed.contains(corpus[i]))
+                live.add(corpus[i]);
+        }
+        if (live.size() == corpus.length && changed.isEmpty())
+            return 0;
+        if (dedup) {
+            setSnapshot(makeIndex(live.iterator(), snapshot.getGeneration() + 1));
+            return corpus.length - live.size();
+        }
+
+        //The lists of the words that are still in a live document are copied without the entries of the other
+        //documents, and the words are given new ids in the same order
+        Map<File, Integer> order = new HashMap<>();
+        for (int i = 0; i < live.size(); i++)
+            order.put(live.get(i), i);
+        Terms old = snapshot.getTerms();
+        List<List<Map.Entry<File, Integer>>> oldIndex = snapshot.getIndex(false);
+        TermDictionary terms = new TermDictionary();
+        List<List<Map.Entry<File, Integer>>> index = new ArrayList<>();
+        for (int id = 0; id < oldIndex.size(); id++) {
+            if (oldIndex.get(id) == null)
+                continue;
+            List<Map.Entry<File, Integer>> list = new LinkedList<>();
+            File doc = null;
+            boolean keep = false;
+            for (Map.Entry<File, Integer> entry : oldIndex.get(id)) {
+                if (!entry.getKey().equals(doc)) {
+                    doc = entry.getKey();
+                    keep = order.containsKey(doc) && !changed.contains(doc);
+                }
+                if (keep)
+                    list.add(new AbstractMap.SimpleEntry<>(doc, entry.getValue()));
+            }
+            if (!list.isEmpty()) {
+                terms.add(old.term(id));
+                index.add(list);
+            }
+        }
+        Map<File, long[]> checkpoints = new HashMap<>(snapshot.getCheckpoints());
+        checkpoints.keySet().retainAll(order.keySet());
+
+        //The new words of each changed document are merged into the lists at the document's place
+        Token word = new Token();
+        Map<File, String> partial = new LinkedHashMap<>();
+        for (File doc : changed) {
+            checkpoints.remove(doc);
+            WordReader sc;
+            try {
+                sc = new WordReader(Documents.openPipelined(doc));
+            } catch (FileNotFoundException e) {
+                live.remove(doc);
+                continue;
+            }
+            Map<Integer, List<Map.Entry<File, Integer>>> words = new HashMap<>();
+            int j = 0;
+            long[] offsets = new long[16];
+            while (nextWord(sc, doc, word, partial)) {
+                if (j % CHECKPOINT == 0) {
+                    if (j / CHECKPOINT == offsets.length)
+                        offsets = Arrays.copyOf(offsets, offsets.length * 2);
+                    offsets[j / CHECKPOINT] = sc.getOffset();
+                }
+                if (analyzer.analyze(word)) {
+                    int id = terms.add(word);
+                    if (id == index.size())
+                        index.add(new LinkedList<>());
+                    words.computeIfAbsent(id, k -> new ArrayList<>()).add(new AbstractMap.SimpleEntry<>(doc, j));
+                }
+                j++;
+            }
+            close(sc);
+            words.forEach((id, entries) -> merge(index.get(id), entries, order));
+            if (j > CHECKPOINT)
+                checkpoints.put(doc, Arrays.copyOf(offsets, (j - 1) / CHECKPOINT + 1));
+        }
+
+        partlyRead = partial;
+        setSnapshot(save(snapshot.getGeneration() + 1, live.toArray(new File[live.size()]), checkpoints, terms,
+                index, null));
+        return corpus.length - live.size();
+    }
+
+    /**
+     * Replaces the current snapshot with a new generation, making its infix index first if it is made ahead of
+     * time
+     * @param snapshot The new snapshot
+     */
+    private void setSnapshot(IndexSnapshot snapshot) {
+        if (infix)
+            makeInfixIndex(snapshot);
+        current.set(snapshot);
+    }
+
+    /**
+     * Writes the deleted documents to storage and frees the memory of an index kept outside of the heap. No
+     * search may be running or started afterwards.
+     */
+    @Override
+    public void close() {
+        flush();
+        current.get().close();
+    }
+
+    @Override
+    public void setExpansions(int limit) {
+        expansions = limit;
+    }
+
+    @Override
+    public void setInfix(boolean infix) {
+        this.infix = infix;
+        if (infix)
+            makeInfixIndex(current.get());
+    }
+
+    /**
+     * Makes the infix index of a snapshot now instead of on the first search that needs it
+     * @param snapshot The snapshot whose words are indexed
+     */
+    private void makeInfixIndex(IndexSnapshot snapshot) {
+        snapshot.getWildcards();
+    }
+
+    /**
+     * Gets the infix index of the current snapshot, which is made now if it has not been made yet
+     * @return The index of the groups of letters of the words
+     */
+    public WildcardIndex getInfixIndex() {
+        return current.get().getWildcards();
+    }
+
+    /**
+     * @return The number of locations of words in the current snapshot's word index
+     */
+    public long getLocations() {
+        long locations = 0;
+        for (List<Map.Entry<File, Integer>> list : current.get().getIndex(false))
+            locations += list.size();
+        return locations;
+    }
+
+    @Override
+    public void setSuggestions(boolean suggestions) {
+        this.suggestions = suggestions;
+    }
+
+    /**
+     * Suggests a spelling for every word of a query that is not in the corpus. Words with wildcards, fuzzy words
+     * and stop words are left as they are.
+     * @param query A word or a query string as given by the user
+     * @return The query with the words replaced by their suggestions, null if suggestions are turned off or
+     * there is nothing to suggest
+     */
+    @Override
+    public String suggest(String query) {
+        if (!suggestions)
+            return null;
+        SpellIndex spelling = spelling(current.get());
+        String[] w = query.split(" ");
+        boolean changed = false;
+        for (int i = 0; i < w.length; i++) {
+            String sign = w[i].startsWith("-") ? "-" : "";
+            String[] alternatives = w[i].substring(sign.length()).split("\\|");
+            for (int j = 0; j < alternatives.length; j++) {
+                String t = normalize(alternatives[j]);
+                if (isExpanded(normalizeTerm(alternatives[j])) || stopWords.contains(t))
+                    continue;
+                String suggestion = spelling.suggest(t);
+                if (suggestion != null) {
+                    alternatives[j] = suggestion;
+                    changed = true;
+                }
+            }
+            w[i] = sign + String.join("|", alternatives);
+        }
+        return changed ? String.join(" ", w) : null;
+    }
+
+    /**
+     * Gets the spelling suggestions for a snapshot. The suggestions are only made the first time they are asked
+     * for. The ones in storage are used even if the corpus has changed since, and are brought up to date by
+     * changing only the words that were added or taken out, which is also done when the index is made again.
+     * @param snapshot The current snapshot
+     * @return The spelling suggestions for the words of the snapshot
+     */
+    private synchronized SpellIndex spelling(IndexSnapshot snapshot) {
+        if (spelling != null && spellingGeneration == snapshot.getGeneration())
+            return spelling;
+        if (spelling == null) {
+            Object stored = readIndexFromStorage(SPELLING_FILE, snapshot.getFingerprint(), true);
+            spelling = stored instanceof SpellIndex ? (SpellIndex) stored : new SpellIndex();
+        }
+        if (spelling.getFingerprint() != snapshot.getFingerprint()) {
+            spelling.update(documentCounts(snapshot), snapshot.getFingerprint());
+            writeIndexForStorage(spelling, SPELLING_FILE, snapshot.getFingerprint());
+        }
+        spellingGeneration = snapshot.getGeneration();
+        return spelling;
+    }
+
+    /**
+     * @param snapshot A snapshot of the index
+     * @return The number of documents each word of the corpus appears in
+     */
+    private static Map<String, Integer> documentCounts(IndexSnapshot snapshot) {
+        Terms terms = snapshot.getTerms();
+        Map<Integer, DocBitmap> bitmaps = snapshot.getBitmaps(false);
+        Map<String, Integer> counts = new HashMap<>();
+        for (int id = 0; id < terms.stemmed(); id++) {
+            List<Map.Entry<File, Integer>> list = snapshot.getPostings(id, false);
+            if (list == null)
+                continue;
+            DocBitmap docs = bitmaps.get(id);
+            int count = docs != null ? docs.cardinality() : docIds(list, snapshot.getDocIds()).length;
+            counts.put(terms.term(id), count);
+        }
+        return counts;
+    }
+    
+    /**
+     * @return The documents that stopped being readable part way through the last time documents were read into
+     * the index, with the reason for each, empty if the index was read from storage
+     */
+    public Map<File, String> getPartlyRead() {
+        return partlyRead;
+    }
+
+    /**
+     * @return The clusters of copies of the documents of the current snapshot, null if they are not looked for
+     */
+    public Duplicates getDuplicates() {
+        return current.get().getDuplicates();
+    }
+
+    /**
+     * @return The number of times the index has been rebuilt since it was created
+     */
+    public long getGeneration() {
+        return current.get().getGeneration();
+    }
+    
+    /**
+     * Uses the index in storage if the corpus has not changed, otherwise makes a new one. Checking the index in
+     * storage needs the whole file list, but when there is nothing in storage the files are indexed as the
+     * walker finds them.
+     * @param generation The generation of the new snapshot
+     * @param useStorage Uses the index in storage if there is one
+     * @return The snapshot holding the index
+     */
+    @SuppressWarnings("unchecked")
+    private IndexSnapshot makeIndex(long generation, boolean useStorage) {
+        if (!useStorage || !new File(fileName(INDEX_FILE)).exists())
+            return makeIndex(walker.stream(), generation);
         
-        index = new Hashtable<String, LinkedList<Map.Entry<File, Integer>>>();
+        //An index stored in an older format is made again. The stored corpus has the same files, in the order
+        //they were indexed in, which the document ids and the order of the lists depend on. The documents deleted
+        //before the index was made were left out of it, and the ones deleted since are still in its lists.
+        Object stored = deleted.isEmpty() ? null : readIndexFromStorage(CORPUS_FILE, 0, true);
+        Set<File> indexed = stored instanceof File[] ? new HashSet<>(Arrays.asList((File[]) stored))
+                : Collections.emptySet();
+        List<File> files = new ArrayList<>();
+        for (File file : walker.list()) {
+            if (!deleted.contains(file) || indexed.contains(file))
+                files.add(file);
+        }
+        File[] corpus = files.toArray(new File[files.size()]);
+        long fingerprint = fingerprint(corpus);
+        Object order = readIndexFromStorage(CORPUS_FILE, fingerprint);
+        Object terms = readIndexFromStorage(TERMS_FILE, fingerprint);
+        Object index = readIndexFromStorage(INDEX_FILE, fingerprint);
+        Object checkpoints = readIndexFromStorage(CHECKPOINT_FILE, fingerprint);
+        //The clusters of copies are only stored when they were looked for, and an index that left out exact
+        //copies can only be used if they should still be left out
+        Object duplicates = readIndexFromStorage(DUPLICATES_FILE, fingerprint);
+        boolean skipped = duplicates instanceof Duplicates && ((Duplicates) duplicates).skipsCopies();
+        boolean fits = dedup ? duplicates instanceof Duplicates && skipped == skipCopies : !skipped;
+        if (order instanceof File[] && terms instanceof TermDictionary && index instanceof List
+                && checkpoints instanceof Map && fits) {
+            IndexSnapshot snapshot = newSnapshot(generation, (File[]) order, fingerprint,
+                    (Map<File, long[]>) checkpoints, (TermDictionary) terms,
+                    (List<List<Map.Entry<File, Integer>>>) index, null, dedup ? (Duplicates) duplicates : null);
+            DocBitmap tombstones = snapshot.getDeleted();
+            for (File file : deleted) {
+                int id = snapshot.getDocId(file);
+                if (id >= 0)
+                    tombstones = tombstones.with(id);
+            }
+            return snapshot.withDeleted(tombstones);
+        }
+        return makeIndex(Arrays.asList(corpus).iterator(), generation);
+    }
+    
+    /**
+     * Creates a the Inverted Index in a list structure that takes in the id of the word and a list containing
+     * the file and location of each occurrence of the word in the corpus. The words are given their ids by the
+     * term dictionary, which also works out their stems once the whole corpus is read.
+     * @param files The files that will be indexed
+     * @param generation The generation of the new snapshot
+     * @return The snapshot holding the new index
+     */
+    private IndexSnapshot makeIndex(Iterator<File> files, long generation) {
+        TermDictionary terms = new TermDictionary();
+        List<List<Map.Entry<File, Integer>>> index = new ArrayList<>();
+        Map<File, long[]> checkpoints = new HashMap<>();
+        ArrayList<File> found = new ArrayList<>();
+        Duplicates duplicates = dedup ? new Duplicates(skipCopies) : null;
+        Map<File, String> partial = new LinkedHashMap<>();
+        int[] pending = new int[16];
+        Token word = new Token();
         
-        //Creates a scanner for each file in the corpus directory
-        for (int i = 0; i < corpus.length; i++) {
-            Scanner sc = null;
+        //Creates a reader for each file as it is found, files that cannot be opened or were deleted are left out
+        //of the corpus
+        while (files.hasNext()) {
+            File doc = files.next();
+            if (deleted.contains(doc))
+                continue;
+            WordReader sc = null;
             try {
-                sc = new Scanner(corpus[i]);
+                sc = new WordReader(Documents.openPipelined(doc));
             } catch (FileNotFoundException e) {
-                // TODO Auto-generated catch block
-                e.printStackTrace();
+                continue;
             }
+            found.add(doc);
             
-            //Goes through each word in the file, getting rid of punctuation and numbers, and converting to lower
-            //case before adding to the inverted index
+            //Goes through each word in the file, passing it through the analyzer which gets rid of punctuation,
+            //numbers and stop words and converts it to lower case, before adding it to the inverted index. Every
+            //word is read into the same token. The offset of every so many words is kept so snippets can
+            //start reading near their word instead of at the start of the file. When copies are looked for, the
+            //words of the document are held back until it is known whether it is an exact copy.
             int j = 0;
-            while(sc.hasNext()) {
-                String word = sc.next();
-                word = word.replaceAll("\\p{Punct}", "");
-                word = word.replaceAll("\\d", "");
-                word = word.toLowerCase();
-                if (!stopList.contains(word) && !word.equals("")) {
-                    if (index.containsKey(word)) {
-                        LinkedList<Map.Entry<File, Integer>> list = index.get(word);
-                        list.add(new AbstractMap.SimpleEntry<>(corpus[i], j));
-                        index.replace(word, list);
+            int held = 0;
+            long[] offsets = new long[16];
+            Duplicates.Signature signature = duplicates == null ? null : new Duplicates.Signature();
+            while(nextWord(sc, doc, word, partial)) {
+                if (j % CHECKPOINT == 0) {
+                    if (j / CHECKPOINT == offsets.length)
+                        offsets = Arrays.copyOf(offsets, offsets.length * 2);
+                    offsets[j / CHECKPOINT] = sc.getOffset();
+                }
+                if (analyzer.analyze(word)) {
+                    int id = terms.add(word);
+                    if (id == index.size())
+                        index.add(new LinkedList<>());
+                    if (signature == null) {
+                        index.get(id).add(new AbstractMap.SimpleEntry<>(doc, j));
                     } else {
-                        LinkedList<Map.Entry<File, Integer>> list = new LinkedList<>();
-                        list.add(new AbstractMap.SimpleEntry<>(corpus[i], j));
-                        index.put(word, list);
+                        signature.add(id, j);
+                        if (held + 2 > pending.length)
+                            pending = Arrays.copyOf(pending, 2 * pending.length);
+                        pending[held++] = id;
+                        pending[held++] = j;
                     }
                 }
                 j++;
             }
+            close(sc);
+            if (signature != null && !duplicates.add(signature)) {
+                for (int k = 0; k < held; k += 2)
+                    index.get(pending[k]).add(new AbstractMap.SimpleEntry<>(doc, pending[k + 1]));
+            }
+            if (j > CHECKPOINT)
+                checkpoints.put(doc, Arrays.copyOf(offsets, (j - 1) / CHECKPOINT + 1));
         }
         
-        //Output the index hash table to a file
-        writeIndexForStorage(false);
+        partlyRead = partial;
+        return save(generation, found.toArray(new File[found.size()]), checkpoints, terms, index, duplicates);
+    }
+    
+    /**
+     * Works out the stems of the words of a new index, writes the index and its dictionary to storage and makes
+     * the snapshot that holds it. The stemmed index in storage was made for the old index, so it is thrown away.
+     * The deleted documents are kept by their paths, so they stay out of the new index.
+     * @param generation The generation of the new snapshot
+     * @param corpus The files that were indexed, the position of each file is its document id
+     * @param checkpoints The byte offsets of every so many words in each large document
+     * @param terms The ids of the words of the index, without their stems yet
+     * @param index The inverted index, the list of each word is at the word's id
+     * @param duplicates The clusters of copies of documents, null if they were not looked for
+     * @return The snapshot holding the new index
+     */
+    private IndexSnapshot save(long generation, File[] corpus, Map<File, long[]> checkpoints, TermDictionary terms,
+            List<List<Map.Entry<File, Integer>>> index, Duplicates duplicates) {
+        terms.stemAll();
+        long fingerprint = fingerprint(corpus);
+        Map<Integer, DocBitmap> bitmaps = makeBitmaps(index, corpus);
+        writeIndexForStorage(corpus, CORPUS_FILE, fingerprint);
+        writeIndexForStorage(terms, TERMS_FILE, fingerprint);
+        writeIndexForStorage(index, INDEX_FILE, fingerprint);
+        writeIndexForStorage(checkpoints, CHECKPOINT_FILE, fingerprint);
+        writeIndexForStorage(bitmaps, BITMAP_FILE, fingerprint);
+        if (duplicates != null) {
+            duplicates.finish();
+            writeIndexForStorage(duplicates, DUPLICATES_FILE, fingerprint);
+        } else {
+            new File(fileName(DUPLICATES_FILE)).delete();
+        }
+        new File(fileName(STEMMED_FILE)).delete();
+        new File(fileName(STEMMED_BITMAP_FILE)).delete();
+        return newSnapshot(generation, corpus, fingerprint, checkpoints, terms, index, bitmaps, duplicates);
+    }
+    
+    /**
+     * Makes the document sets of the words that appear in at least one in every so many documents of the
+     * corpus. Rarer words have short lists, so their sets are made from the lists when they are searched.
+     * @param index The index, the list of each word is at the word's id
+     * @param corpus The files that were indexed, the position of each file is its document id
+     * @return The set of documents of each frequent word by id
+     */
+    private static Map<Integer, DocBitmap> makeBitmaps(List<List<Map.Entry<File, Integer>>> index, File[] corpus) {
+        Map<File, Integer> docIds = new HashMap<>();
+        for (int i = 0; i < corpus.length; i++)
+            docIds.put(corpus[i], i);
+        int frequent = Math.max(2, corpus.length / BITMAP_RATIO);
+        
+        Map<Integer, DocBitmap> bitmaps = new HashMap<>();
+        for (int id = 0; id < index.size(); id++) {
+            List<Map.Entry<File, Integer>> list = index.get(id);
+            if (list != null && list.size() >= frequent) {
+                DocBitmap docs = docSet(list, docIds);
+                if (docs.cardinality() >= frequent)
+                    bitmaps.put(id, docs);
+            }
+        }
+        return bitmaps;
+    }
+    
+    /**
+     * @param list The list of files and locations of a word
+     * @param docIds The document id of each file of the corpus
+     * @return The set of documents the word appears in
+     */
+    private static DocBitmap docSet(List<Map.Entry<File, Integer>> list, Map<File, Integer> docIds) {
+        int[] docs = docIds(list, docIds);
+        return DocBitmap.of(docs, docs.length);
+    }
+    
+    /**
+     * Decodes the document ids of a list, which is the form the lists are intersected in
+     * @param list The list of files and locations of a word
+     * @param docIds The document id of each file of the corpus
+     * @return The ids of the documents the word appears in, in increasing order
+     */
+    private static int[] docIds(List<Map.Entry<File, Integer>> list, Map<File, Integer> docIds) {
+        int[] docs = new int[16];
+        int n = 0;
+        boolean sorted = true;
+        File last = null;
+        for (Map.Entry<File, Integer> entry : list) {
+            if (entry.getKey().equals(last))
+                continue;
+            last = entry.getKey();
+            if (n == docs.length)
+                docs = Arrays.copyOf(docs, n * 2);
+            docs[n] = docIds.get(last);
+            if (n > 0 && docs[n] <= docs[n - 1])
+                sorted = false;
+            n++;
+        }
+        //The lists are kept in the order of the corpus, but a document could still appear twice if it was not
+        if (!sorted) {
+            Arrays.sort(docs, 0, n);
+            int unique = 0;
+            for (int i = 0; i < n; i++) {
+                if (unique == 0 || docs[i] != docs[unique - 1])
+                    docs[unique++] = docs[i];
+            }
+            n = unique;
+        }
+        return Arrays.copyOf(docs, n);
+    }
+    
+    /**
+     * Gets the document sets of the frequent words from storage, or makes them again if they cannot be read
+     * @param file The name of the file they are stored in
+     * @param fingerprint The fingerprint of the corpus as it is now
+     * @param index The index they were made from
+     * @param corpus The files that were indexed
+     * @return The set of documents of each frequent word by id
+     */
+    @SuppressWarnings("unchecked")
+    private Map<Integer, DocBitmap> loadBitmaps(String file, long fingerprint,
+            List<List<Map.Entry<File, Integer>>> index, File[] corpus) {
+        Object bitmaps = readIndexFromStorage(file, fingerprint);
+        if (bitmaps instanceof Map)
+            return (Map<Integer, DocBitmap>) bitmaps;
+        return makeBitmaps(index, corpus);
+    }
+    
+    /**
+     * Makes a snapshot without a stemmed index, copying the index outside of the heap if it should be kept there
+     * @param generation The generation of the new snapshot
+     * @param corpus The files that were indexed
+     * @param fingerprint The fingerprint of the files when they were indexed
+     * @param checkpoints The byte offsets of every so many words in each large document
+     * @param terms The ids of the words of the index and their stems
+     * @param index The inverted index, the list of each word is at the word's id
+     * @param bitmaps The document sets of the frequent words, null to load them from storage when they are
+     * first needed
+     * @param duplicates The clusters of copies of documents, null if they were not looked for
+     * @return The snapshot holding the index
+     */
+    private IndexSnapshot newSnapshot(long generation, File[] corpus, long fingerprint, Map<File, long[]> checkpoints,
+            TermDictionary terms, List<List<Map.Entry<File, Integer>>> index, Map<Integer, DocBitmap> bitmaps,
+            Duplicates duplicates) {
+        List<List<Map.Entry<File, Integer>>> postings = offHeap ? new OffHeapPostings(index, corpus) : index;
+        return new IndexSnapshot(generation, corpus, fingerprint, checkpoints,
+                offHeap ? new OffHeapTerms(terms) : terms, postings,
+                bitmaps != null ? () -> bitmaps : () -> loadBitmaps(BITMAP_FILE, fingerprint, postings, corpus),
+                duplicates);
+    }
+    
+    /**
+     * Reads the next word of a document being indexed. If the document stops being readable part way through,
+     * the words read so far are kept and the reason is noted for the caller.
+     * @param sc The reader of the document
+     * @param doc The document
+     * @param word Gets the next word
+     * @param partial Gets the document and the reason if it cannot be read any more
+     * @return False at the end of the document or if it cannot be read any more
+     */
+    private static boolean nextWord(WordReader sc, File doc, Token word, Map<File, String> partial) {
+        try {
+            return sc.next(word);
+        } catch (IOException e) {
+            partial.put(doc, e.getMessage());
+            return false;
+        }
+    }
+    
+    /**
+     * Closes a document after it has been read
+     * @param sc The reader of the document
+     */
+    private static void close(WordReader sc) {
+        try {
+            sc.close();
+        } catch (IOException e) {
+            //The document has already been read
+        }
+    }
+    
+    /**
+     * Makes a fingerprint of the paths, sizes and modification times of the files in the corpus. If any file
+     * is added, removed or changed the fingerprint changes, and the index in storage is no longer used. The way
+     * words are normalized is part of the fingerprint too, since the terms of the index depend on it.
+     * @param corpus The files that will be indexed
+     * @return The fingerprint of the files
+     */
+    private static long fingerprint(File[] corpus) {
+        File[] sorted = corpus.clone();
+        Arrays.sort(sorted);
+        long fingerprint = Analyzer.Normalize.version();
+        for (File f : sorted) {
+            //Entries of a zip file use the size and modification time of the zip file
+            File container = Documents.container(f);
+            fingerprint = 31 * fingerprint + f.getPath().hashCode();
+            fingerprint = 31 * fingerprint + container.length();
+            fingerprint = 31 * fingerprint + container.lastModified();
+        }
+        return fingerprint;
     }
     
     /**
      * After the inverted index is created, Porter's Algorithm in the Stemmer class is used to make an
      * inverted index that contains only the stemmed words.
      */
+    @Override
     public void makeStemmedIndex () {
-        if (readIndexFromStorage(true))
-            return;
-        
-        stemmedIndex = new Hashtable<>();
+        stemmedSnapshot();
+    }
+    
+    /**
+     * Makes the stemmed index for the current snapshot if it does not have one yet. The stemmed index is made
+     * to the side and the snapshot is only replaced if it was not rebuilt in the meantime.
+     * @return The current snapshot, which has a stemmed index
+     */
+    private IndexSnapshot stemmedSnapshot() {
+        IndexSnapshot snapshot = current.get();
+        while (snapshot.getIndex(true) == null) {
+            Object stored = readIndexFromStorage(STEMMED_FILE, snapshot.getFingerprint());
+            boolean made = !(stored instanceof List);
+            @SuppressWarnings("unchecked")
+            List<List<Map.Entry<File, Integer>>> stemmedIndex = made ? stemIndex(snapshot) :
+                (List<List<Map.Entry<File, Integer>>>) stored;
+            
+            File[] corpus = snapshot.getCorpus();
+            long fingerprint = snapshot.getFingerprint();
+            Map<Integer, DocBitmap> bitmaps = made ? makeBitmaps(stemmedIndex, corpus) : null;
+            OffHeapPostings copy = offHeap ? new OffHeapPostings(stemmedIndex, corpus) : null;
+            List<List<Map.Entry<File, Integer>>> postings = offHeap ? copy : stemmedIndex;
+            IndexSnapshot stemmed = snapshot.withStemmedIndex(postings, made ? () -> bitmaps :
+                () -> loadBitmaps(STEMMED_BITMAP_FILE, fingerprint, postings, corpus));
+            if (current.compareAndSet(snapshot, stemmed)) {
+                //Write the stemmed index to a file
+                if (made) {
+                    writeIndexForStorage(stemmedIndex, STEMMED_FILE, fingerprint);
+                    writeIndexForStorage(bitmaps, STEMMED_BITMAP_FILE, fingerprint);
+                }
+                return stemmed;
+            }
+            //The copy was never seen by a search, so it can be freed straight away
+            if (copy != null)
+                copy.close();
+            snapshot = current.get();
+        }
+        return snapshot;
+    }
+    
+    /**
+     * Combines the lists of words with the same stem, using the stems the dictionary worked out when the
+     * index was made
+     * @param snapshot The snapshot whose index is stemmed
+     * @return The stemmed index, the list of each stem is at the stem's id
+     */
+    private static List<List<Map.Entry<File, Integer>>> stemIndex(IndexSnapshot snapshot) {
+        Terms terms = snapshot.getTerms();
+        List<List<Map.Entry<File, Integer>>> index = snapshot.getIndex(false);
+        List<List<Map.Entry<File, Integer>>> stemmedIndex =
+            new ArrayList<>(Collections.nCopies(terms.size(), null));
+        Map<File, Integer> order = snapshot.getDocIds();
         
-        index.forEach((k, v) -> {
-            Stemmer s = new Stemmer();
-            for (int i = 0; i < k.length(); i++) {
-                s.add(k.charAt(i));
-            }
-            s.stem();
-            String word = s.toString();
-            if (stemmedIndex.containsKey(word)) {
+        for (int id = 0; id < index.size(); id++) {
+            int stem = terms.stem(id);
+            if (stemmedIndex.get(stem) != null) {
                 //If two words are stemmed to the same root, then their lists of files and locations are combined
-                LinkedList<Map.Entry<File, Integer>> list1 = index.get(k);
-                LinkedList<Map.Entry<File, Integer>> list2 = stemmedIndex.get(word);
-                for (int j = 0; j < list1.size(); j++)
-                    list2.add(list1.get(j));
-                stemmedIndex.replace(word, list2);
+                merge(stemmedIndex.get(stem), index.get(id), order);
             } else {
-                //Otherwise the list of the unstemmed word is added to the new index with the stemmed word
-                LinkedList<Map.Entry<File, Integer>> list = index.get(k);
-                stemmedIndex.put(word, list);
+                //Otherwise a copy of the list of the unstemmed word is added to the new index at the stem's id
+                stemmedIndex.set(stem, new LinkedList<>(index.get(id)));
             }
-        });
-        
-        //Write the stemmed index to a file
-        writeIndexForStorage(true);
+        }
+        return stemmedIndex;
     }
     
     /**
-     * Outputs the entire index to a txt file called outputInvertedIndex.txt
+     * Merges the entries of one list into another, keeping the entries for each document next to each other
+     * and in order of location, and the documents in the order of the corpus
+     * @param list The list that the entries are added to
+     * @param other The list whose entries are added
+     * @param order The position of each document in the corpus
      */
-    public void outputIndex(boolean useStemmed) {
-        PrintWriter writer;
-        Hashtable<String, LinkedList<Map.Entry<File, Integer>>> index;
-        if (useStemmed)
-            index = stemmedIndex;
-        else
-            index = this.index;
-        
-        try {
-            writer = new PrintWriter("outputInvertedIndex.txt");
-            //For each word in the index, the word is printed with the information in its linked list
-            index.forEach((k, v) -> {
-                writer.print(k + ": {");
-                v.forEach(entry -> {
-                   writer.print("(" + entry.getKey().getName() + ", " + entry.getValue() + "), "); 
-                });
-                writer.print("}");
-                writer.println();
-            });
-            writer.close();
-        } catch (FileNotFoundException e) {
-            // TODO Auto-generated catch block
-            e.printStackTrace();
+    private static void merge(List<Map.Entry<File, Integer>> list, List<Map.Entry<File, Integer>> other,
+            Map<File, Integer> order) {
+        ListIterator<Map.Entry<File, Integer>> it = list.listIterator();
+        for (Map.Entry<File, Integer> entry : other) {
+            int pos = order.getOrDefault(entry.getKey(), Integer.MAX_VALUE);
+            while (it.hasNext()) {
+                Map.Entry<File, Integer> e = it.next();
+                int p = order.getOrDefault(e.getKey(), Integer.MAX_VALUE);
+                if (p > pos || p == pos && e.getValue() > entry.getValue()) {
+                    it.previous();
+                    break;
+                }
+            }
+            it.add(entry);
         }
     }
     
     /**
-     * General method for searching for words, used by searchWord and searchWordStemmed
-     * @param word The word that is to be searched for
-     * @param useStemmed Indicates which index to use, true - stemmed index, false - inverted index
-     * @return Hashtable<File, Integer> Contains the files the word is found in and how many times in each file
+     * Merges any number of lists at once by always taking the first of the entries at the front of the lists, so
+     * each entry is only looked at once instead of once for every list merged before it
+     * @param lists Lists of files and locations, each in the order of the files and then by location
+     * @param order The position of each file in the corpus
+     * @return The entries of all the lists in the same order, the list itself if there is only one
      */
-    private Hashtable<File, Integer> search (String word, boolean useStemmed) {
-        LinkedList<Map.Entry<File, Integer>> list;
-        Hashtable<File, Integer> visited = new Hashtable<>();
-        
-        if (!useStemmed) {
-            list = index.get(word.toLowerCase());
-        } else {
-            list = stemmedIndex.get(word.toLowerCase());
+    private static List<Map.Entry<File, Integer>> mergeAll(List<List<Map.Entry<File, Integer>>> lists,
+            Map<File, Integer> order) {
+        if (lists.size() == 1)
+            return lists.get(0);
+        int total = 0;
+        PriorityQueue<Head> heads = new PriorityQueue<>();
+        for (List<Map.Entry<File, Integer>> list : lists) {
+            total += list.size();
+            Head head = new Head(list.iterator(), order);
+            if (head.advance())
+                heads.add(head);
+        }
+
+        List<Map.Entry<File, Integer>> merged = new ArrayList<>(total);
+        while (!heads.isEmpty()) {
+            Head head = heads.poll();
+            merged.add(head.entry);
+            if (head.advance())
+                heads.add(head);
+        }
+        return merged;
+    }
+
+    /**
+     * The front of one of the lists being merged
+     */
+    private static class Head implements Comparable<Head> {
+        private Iterator<Map.Entry<File, Integer>> rest;
+        private Map<File, Integer> order;
+        private Map.Entry<File, Integer> entry;
+        private int doc;
+
+        Head(Iterator<Map.Entry<File, Integer>> rest, Map<File, Integer> order) {
+            this.rest = rest;
+            this.order = order;
+        }
+
+        /**
+         * @return False if the list has no more entries
+         */
+        boolean advance() {
+            if (!rest.hasNext())
+                return false;
+            entry = rest.next();
+            doc = order.getOrDefault(entry.getKey(), Integer.MAX_VALUE);
+            return true;
+        }
+
+        @Override
+        public int compareTo(Head other) {
+            if (doc != other.doc)
+                return Integer.compare(doc, other.doc);
+            return Integer.compare(entry.getValue(), other.entry.getValue());
         }
-        
-        if (list == null)
-            return null;
-        
-        list.forEach(entry -> {
-            File doc = entry.getKey();
-            if(visited.containsKey(doc)) {
-                int count = visited.get(doc);
-                count++;
-                visited.replace(doc, count);
-            } else {
-                visited.put(doc, 1);
-            }
-        });
-        return visited;
     }
     
     /**
-     * The word is found in the index, and then the number of occurrences in each document is counted and the 
-     * results are written to the output file path
-     * @param w The word to be searched for in the index
-     * @param output The path of the file where the output will be written
-     * @param graphic Indicates what type of output is used, 0=txt file, 1=gui, 2=both
-     * @throws FileNotFoundException If the path of the output file in invalid
+     * Outputs the entire index to a txt file called outputInvertedIndex.txt
      */
-    public void searchWord(String w, String output, int length, int graphic) throws FileNotFoundException {
-        //The word is formatted the same way terms were when being placed in the inverted index
-        String temp = w.replaceAll("\\p{Punct}", "");
-        temp = temp.replaceAll("\\d", "");
-        temp = temp.toLowerCase();
-        String word = temp;
-        
-        PrintWriter writer = new PrintWriter(output);
-        Hashtable<File, Integer> visited = search(word, false);
+    public void outputIndex(boolean useStemmed) {
+        PrintWriter writer;
+        IndexSnapshot snapshot = snapshot(useStemmed);
+        List<List<Map.Entry<File, Integer>>> index = snapshot.getIndex(useStemmed);
         
-        if (visited == null) {
-            writer.println("No results found for " + w);
-            writer.close();
-        } else {
-            //Outputting the results
-            if (graphic == 0 || graphic == 2) {
-                writer.println("Search Results for the word: " + w);
-                visited.forEach((k, v) -> {
-                    writer.println(k.getName() + ": " + v);
-                    //Add snippet
-                    try {
-                        writer.println("\t\"..." + snippet(length, word, k, false) + "...\"");
-                    } catch (FileNotFoundException e) {
-                        // TODO Auto-generated catch block
-                        writer.println();
-                    }
+        try {
+            writer = new PrintWriter("outputInvertedIndex.txt");
+            //For each word in the index, the word is printed with the information in its linked list
+            for (int id = 0; id < index.size(); id++) {
+                if (index.get(id) == null)
+                    continue;
+                writer.print(snapshot.getTerms().term(id) + ": {");
+                index.get(id).forEach(entry -> {
+                   writer.print("(" + entry.getKey().getName() + ", " + entry.getValue() + "), "); 
                 });
+                writer.print("}");
+                writer.println();
             }
             writer.close();
-        }
-        
-        //display on gui
-        if (graphic == 1 || graphic == 2) {
-            displayWord(word, visited, length);
+        } catch (FileNotFoundException e) {
+            // TODO Auto-generated catch block
+            e.printStackTrace();
         }
     }
     
     /**
-     * The search for the original word stays the same. If the stemmed word is different, then another search
-     * is made to the stemmed index to get more results that may be relevant to the query.
-     * @param word The word to be searched for and stemmed
-     * @param output The path of the file where the output will be written
-     * @param graphic Indicates what type of output is used, 0=txt file, 1=gui, 2=both
-     * @throws FileNotFoundException If the path of the output file is invalid
+     * Searches for a single word and returns the documents it appears in, one hit per document. The hits are
+     * made as the iterator is advanced and nothing is read from the documents until a snippet is asked for.
+     * @param w The word to be searched for
+     * @param useStemmed Searches the stemmed index for the stem of the word if true
+     * @return Iterator over the hits, which is empty if the word is not in the index
      */
-    public void searchWordStemmed(String w, String output, int length, int graphic) throws FileNotFoundException {
-        //The word is formatted the same way terms were when being placed in the inverted index
-        String temp = w.replaceAll("\\p{Punct}", "");
-        temp = temp.replaceAll("\\d", "");
-        temp = temp.toLowerCase();
-        String word = temp;
-        
-        PrintWriter writer = new PrintWriter(output);
-        Hashtable<File, Integer> visited = search(word, false);
-        Hashtable<File, Integer> visitedStemmed = null;
-        Stemmer stem = new Stemmer();
-        
-        if (graphic == 0 || graphic ==2) {
-            if(visited == null) {
-                writer.println("No results found for " + w);
-            } else {
-                //Outputting the results
-                writer.println("Search Results for the word: " + w);
-                visited.forEach((k, v) -> {
-                    writer.println(k.getName() + ": " + v);
-                    //Add snippet
-                    try {
-                        writer.println("\t\"..." + snippet(length, word, k, false) + "...\"");
-                    } catch (FileNotFoundException e) {
-                        // TODO Auto-generated catch block
-                        writer.println();
-                    }
-                });
-            }
-        }
-        
-        //Get the stemmed word, and if it is different get the search from the stemmed index
-        for (int i = 0; i < word.length(); i++) {
-            stem.add(word.charAt(i));
-        }
-        stem.stem();
-        String stemmedWord = stem.toString();
-        
-        if (!stemmedWord.equals(word)) {
-            visitedStemmed = search(stemmedWord, true);
-            if (graphic == 0 || graphic == 2) {
-                writer.println();
-                if(visitedStemmed == null) {    
-                    writer.println("No result found for " + stemmedWord);
-                    writer.close();
-                    return;
+    @Override
+    public Iterator<SearchResult> findWord(String w, boolean useStemmed) {
+        return new HitIterator(snapshot(useStemmed), new Query(new String[][] {{normalizeTerm(w)}}, new String[0],
+                new int[0][]),
+                useStemmed);
+    }
+
+    /**
+     * Searches for each word of the query and returns the documents that contain all the words that are not
+     * stop words, one hit per document. Words joined by | are alternatives, and a document only needs one of
+     * them. Words starting with - must not be in the document. A word with a * or ? is an alternative of every
+     * word it matches, and so is a word ending in ~ of every word within one or two edits of it. NEAR/k between
+     * two words means they must appear within k words of each other. The hits are made as the iterator is
+     * advanced.
+     * @param query The set of words that will be searched in the corpus
+     * @param useStemmed Searches the stemmed index for the stems of the words if true
+     * @return Iterator over the hits, which is empty if any of the words are not in the index
+     */
+    @Override
+    public Iterator<SearchResult> findWords(String query, boolean useStemmed) {
+        IndexSnapshot snapshot = snapshot(useStemmed);
+        return new HitIterator(snapshot, queryTerms(snapshot.getTerms(), query, useStemmed), useStemmed);
+    }
+
+    /**
+     * Searches the stemmed index for the query and leaves out the hits of the query in the inverted index. Both
+     * searches read the same snapshot and make their hits in document order, so the hits of the query are
+     * walked along with the stemmed hits and never kept.
+     * @param query The set of words that will be searched in the corpus
+     * @return Iterator over the stemmed hits whose documents are not hits of the query
+     */
+    @Override
+    public Iterator<SearchResult> findSimilarWords(String query) {
+        IndexSnapshot snapshot = stemmedSnapshot();
+        Terms dictionary = snapshot.getTerms();
+        Iterator<SearchResult> hits = new HitIterator(snapshot, queryTerms(dictionary, query, false), false);
+        Iterator<SearchResult> stemHits = new HitIterator(snapshot, queryTerms(dictionary, query, true), true);
+        return new Iterator<SearchResult>() {
+            private SearchResult found = hits.hasNext() ? hits.next() : null;
+            private SearchResult next = advance();
+
+            /**
+             * @return The next stemmed hit that the query does not have, null if there are no more
+             */
+            private SearchResult advance() {
+                while (stemHits.hasNext()) {
+                    SearchResult hit = stemHits.next();
+                    int id = snapshot.getDocId(hit.getDoc());
+                    while (found != null && snapshot.getDocId(found.getDoc()) < id)
+                        found = hits.hasNext() ? hits.next() : null;
+                    if (found == null || !found.getDoc().equals(hit.getDoc()))
+                        return hit;
                 }
-                writer.println("Search Results for similar word: " + stemmedWord);
-                visitedStemmed.forEach((k, v) -> {
-                    writer.println(k.getName() + ": " + v);
-                    try {
-                        writer.println("\t\"..." + snippet(length, stemmedWord, k, true) + "...\"");
-                    } catch (FileNotFoundException e) {
-                        // TODO Auto-generated catch block
-                        writer.println();
-                    }
-                });
+                return null;
             }
-        }
-        writer.close();
-        
-        //display on gui
-        if (graphic == 1 || graphic == 2)
-            displayWordStemmed(word, stemmedWord, visited, visitedStemmed, length);
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public SearchResult next() {
+                if (next == null)
+                    throw new NoSuchElementException();
+                SearchResult current = next;
+                next = advance();
+                return current;
+            }
+        };
     }
-    
+
     /**
-     * Searches the entire index for occurrences of the given document, and outputs which words have the 
-     * document in their list, and how many times the word appears in the document.
-     * @param doc The name of the document to be search for in the index
-     * @param output The path of the file where the results will be output to
-     * @throws FileNotFoundException If the output path is invalid
+     * Gets the snapshot that a search will read from for its whole length
+     * @param useStemmed Makes sure the snapshot has a stemmed index if true
+     * @return The current snapshot
      */
-    public void searchDoc(String doc, String output) throws FileNotFoundException {
-        PrintWriter writer = new PrintWriter(output);
+    private IndexSnapshot snapshot(boolean useStemmed) {
+        return useStemmed ? stemmedSnapshot() : current.get();
+    }
+
+    /**
+     * Counts how many times each word of the index appears in the given document. The counts are made as the
+     * iterator is advanced.
+     * @param doc The name of the document to be searched for in the index
+     * @return Iterator over the words in the document and their counts, null if the document is not in the corpus
+     */
+    @Override
+    public Iterator<Map.Entry<String, Integer>> findDoc(String doc) {
+        IndexSnapshot snapshot = current.get();
         
         //Checks if the document is in the file list of the corpus
-        int i;
-        for(i = 0; i < corpus.length; i++) {
-            if (corpus[i].getName().equals(doc))
-                break;
-        }
-        if (i == corpus.length) {
-            writer.println("No results found for the document: " + doc);
-            writer.close();
-            return;
-        }
-        
-        //Goes through each word's list in the index, and counts how many times the document appears in the list
-        //This is the word's count which will be output to the output file
-        writer.println("Search Results for the document: " + doc);
-        index.forEach((k, v) -> {
-            int count = 0;
-            for(int j = 0; j < v.size(); j++) {
-                if (v.get(j).getKey().getName().equals(doc)) {
-                    count ++;
+        long start = QueryMetrics.start();
+        File found = findFile(snapshot, doc, false);
+        QueryMetrics.add(QueryMetrics.Stage.LOOKUP, start);
+        if (found == null)
+            return null;
+        File file = original(snapshot, found);
+
+        List<List<Map.Entry<File, Integer>>> index = snapshot.getIndex(false);
+        return new Iterator<Map.Entry<String, Integer>>() {
+            private int id = 0;
+            private Map.Entry<String, Integer> next = advance();
+
+            //Goes through each word's list in the index, and counts how many times the document appears in it
+            private Map.Entry<String, Integer> advance() {
+                long start = QueryMetrics.start();
+                try {
+                    while (id < index.size()) {
+                        int count = 0;
+                        for (Map.Entry<File, Integer> entry : index.get(id)) {
+                            if (entry.getKey().equals(file))
+                                count++;
+                        }
+                        id++;
+                        if (count > 0)
+                            return new AbstractMap.SimpleEntry<>(snapshot.getTerms().term(id - 1), count);
+                    }
+                    return null;
+                } finally {
+                    QueryMetrics.add(QueryMetrics.Stage.COUNT, start);
                 }
             }
-            if (count > 0) {
-                writer.println(k + ": " + count);
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
             }
-        });
-        writer.close();
+
+            @Override
+            public Map.Entry<String, Integer> next() {
+                if (next == null)
+                    throw new NoSuchElementException();
+                Map.Entry<String, Integer> current = next;
+                next = advance();
+                return current;
+            }
+        };
     }
-    
+
     /**
      * All information in the index on the given word will be output to the given file path.
      * @param word The word that will have its information printed
@@ -349,9 +1182,11 @@ public class InvertedIndex {
      */
     public void printWord(String word, String output) throws FileNotFoundException {
         PrintWriter writer = new PrintWriter(output);
+        IndexSnapshot snapshot = current.get();
+        List<Map.Entry<File, Integer>> list = snapshot.getPostings(snapshot.getTerms().id(word), false);
         
         //If the index does not have the given word, there is nothing to print
-        if(!index.containsKey(word)) {
+        if(list == null) {
             writer.println("Word " + word + " not found in the Inverted Index");
             writer.close();
             return;
@@ -360,7 +1195,6 @@ public class InvertedIndex {
         //The list of the given word is formatted to the output, each entry on a line
         writer.println("Inverted Index contents for the word: " + word);
         writer.println("Format is filename:location; The location is the number of words from the beginning of the file");
-        LinkedList<Map.Entry<File, Integer>> list = index.get(word);
         list.forEach(entry -> {
             writer.println(entry.getKey().getName() + ": " + entry.getValue());
         });
@@ -376,56 +1210,83 @@ public class InvertedIndex {
      */
     public void printDoc(String doc, String output) throws FileNotFoundException {
         PrintWriter writer = new PrintWriter(output);
+        IndexSnapshot snapshot = current.get();
         
         //Checks if the document is in the corpus
-        int i;
-        for(i = 0; i < corpus.length; i++) {
-            if (corpus[i].getName().equals(doc))
-                break;
-        }
-        if (i == corpus.length) {
+        File file = findFile(snapshot, doc, false);
+        if (file == null) {
             writer.println("Document " + doc + " not found in the Inverted Index");
             writer.close();
             return;
         }
+        file = original(snapshot, file);
         
         //Checks each word's list in the index, if the document is in it, outputs the word and the location on
         //a line of the output file
         writer.println("Inverted Index contents for the document: " + doc);
         writer.println("Format is word:location; The location is the number of words from the beginning of the file");
-        index.forEach((k, v) -> {
-            for(int j = 0; j < v.size(); j++) {
-                if (v.get(j).getKey().getName().equals(doc)) {
-                    writer.println(k + ": " + v.get(j).getValue());
+        List<List<Map.Entry<File, Integer>>> index = snapshot.getIndex(false);
+        for (int id = 0; id < index.size(); id++) {
+            for (Map.Entry<File, Integer> entry : index.get(id)) {
+                if (entry.getKey().equals(file)) {
+                    writer.println(snapshot.getTerms().term(id) + ": " + entry.getValue());
                 }
             }
-        });
+        }
         
         writer.close();
     }
     
     /**
-     * Writes the index object to a text file to be read in at a later time
-     * @param useStemmed Indicates which index if being written, the stemmed or not stemmed
+     * @param snapshot The snapshot that is searched
+     * @param file A document of the corpus
+     * @return The document it is an exact copy of if it was left out of the index, otherwise the document itself
      */
-    private void writeIndexForStorage(boolean useStemmed) {
-        Hashtable<String, LinkedList<Map.Entry<File, Integer>>> index;
-        String fileName;
-        if (useStemmed) {
-            index = stemmedIndex;
-            fileName = "./Data/StemmedIndex.txt";
-        }
-        else {
-            index = this.index;
-            fileName = "./Data/InvertedIndex.txt";
+    private static File original(IndexSnapshot snapshot, File file) {
+        Duplicates duplicates = snapshot.getDuplicates();
+        if (duplicates == null)
+            return file;
+        return snapshot.getCorpus()[duplicates.original(snapshot.getDocId(file))];
+    }
+    
+    /**
+     * Looks a document up in the corpus of a snapshot. The name is first taken as a path from the corpus
+     * directory, which tells apart documents in different subdirectories that have the same name, and then as
+     * the name of the file. Of the documents with the name, one that is not deleted is found first.
+     * @param snapshot The snapshot that is searched
+     * @param doc The name or path of the document
+     * @param withDeleted Also finds documents that are deleted in the snapshot if true
+     * @return The file of the document, null if there is none with the name or path
+     */
+    private File findFile(IndexSnapshot snapshot, String doc, boolean withDeleted) {
+        File[] corpus = snapshot.getCorpus();
+        int id = snapshot.getDocId(new File(walker.getDir(), doc));
+        if (id >= 0 && (withDeleted || !snapshot.isDeleted(id)))
+            return corpus[id];
+        File found = null;
+        for (int i : snapshot.getDocsNamed(doc)) {
+            if (!snapshot.isDeleted(i))
+                return corpus[i];
+            if (withDeleted && found == null)
+                found = corpus[i];
         }
-        
-        File path = new File("./Data");
+        return found;
+    }
+    
+    /**
+     * Writes the index object to a text file to be read in at a later time
+     * @param index The index, or other data kept with the index, that is being written
+     * @param name The name of the file in the collection's data folder
+     * @param fingerprint The fingerprint of the corpus the index was made from
+     */
+    private void writeIndexForStorage(Object index, String name, long fingerprint) {
+        File path = new File(data);
         if (!path.exists())
-            path.mkdir();
+            path.mkdirs();
         
         try {
-            ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(fileName));
+            ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(fileName(name)));
+            out.writeLong(fingerprint);
             out.writeObject(index);
             out.close();
         } catch (IOException e) {
@@ -437,22 +1298,30 @@ public class InvertedIndex {
     /**
      * Reads in the index from a previously created text file. This file should have been made using the 
      * writeIndexToStorage method
-     * @param useStemmed Indicates which index is being read, the stemmed or not stemmed
-     * @return Returns true if the index was read in, false if not
-     */
-    @SuppressWarnings("unchecked") //The only files that would be in the data folder are ones created by the
-    //program. 
-    private boolean readIndexFromStorage(boolean useStemmed) {
-        Hashtable<String, LinkedList<Map.Entry<File, Integer>>> temp;
-        String fileName;
-        if (useStemmed) 
-            fileName = "./Data/StemmedIndex.txt";
-        else
-            fileName = "./Data/InvertedIndex.txt";
+     * @param name The name of the file in the collection's data folder
+     * @param fingerprint The fingerprint of the corpus as it is now
+     * @return Returns the object that was read in, null if it could not be read or the corpus has changed
+     */
+    private Object readIndexFromStorage(String name, long fingerprint) {
+        return readIndexFromStorage(name, fingerprint, false);
+    }
+    
+    /**
+     * Reads in an object kept with the index, which can be read even if it was made for an older corpus
+     * @param name The name of the file in the collection's data folder
+     * @param fingerprint The fingerprint of the corpus as it is now
+     * @param stale Reads the object even if the corpus has changed since it was written if true
+     * @return Returns the object that was read in, null if it could not be read
+     */
+    private Object readIndexFromStorage(String name, long fingerprint, boolean stale) {
+        Object temp;
         
         try {
-            ObjectInputStream in = new ObjectInputStream(new FileInputStream(fileName));
-            temp = (Hashtable<String, LinkedList<Map.Entry<File, Integer>>>) in.readObject();
+            ObjectInputStream in = new ObjectInputStream(new FileInputStream(fileName(name)));
+            if (in.readLong() == fingerprint || stale)
+                temp = in.readObject();
+            else
+                temp = null;
             in.close();
         } catch (FileNotFoundException e) {
             // TODO Auto-generated catch block
@@ -465,433 +1334,639 @@ public class InvertedIndex {
             temp = null;
         }
         
-        if (temp == null)
-            return false;
-        
-        if (useStemmed)
-            stemmedIndex = temp;
-        else
-            index = temp;
-        return true;
+        return temp;
     }
     
     /**
-     * Finds and returns a snippet from a document of a word's first appearance.
+     * @param name The name of a file kept with the index
+     * @return The path of the file in the collection's data folder
+     */
+    private String fileName(String name) {
+        return data + "/" + name;
+    }
+    
+    /**
+     * Finds and returns a snippet from a document around the given location.
      * @param length The number of words before and after the desired word
-     * @param word The word that will be at the center of the snippet
+     * @param location The number of words from the beginning of the document to the desired word
      * @param doc The document where the snippet will be taken from
-     * @param useStemmed Uses the stemmed index if true
+     * @param offsets The checkpoints of the document in the snapshot the location came from, null if it has none
      * @return String of the snippet
      * @throws FileNotFoundException If the doc's path is invalid
      */
-    private String snippet(int length, String word, File doc, boolean useStemmed) throws FileNotFoundException {
-        Scanner input = new Scanner(doc);
-        LinkedList<Map.Entry<File, Integer>> locations;
-        if(!useStemmed) {
-            locations = index.get(word.toLowerCase());
-        } else {
-            locations = stemmedIndex.get(word.toLowerCase());
-        }
-        int location = 0;
+    String snippet(int length, int location, File doc, long[] offsets) throws FileNotFoundException {
+        return snippet(location-length, location+length, doc, offsets, new int[0]);
+    }
+
+    /**
+     * Reads the words of a document between two locations and marks some of them. Large documents are read
+     * starting from the last checkpoint before the snippet, so only the words near the snippet are read. The
+     * checkpoints are the ones of the snapshot the locations came from, so a document that was read again since
+     * is not read from the offsets of its new version.
+     * @param start The location of the first word of the snippet
+     * @param end The location of the last word of the snippet
+     * @param doc The document where the snippet will be taken from
+     * @param offsets The byte offsets of every so many words in the document, null if it has none
+     * @param marked The locations of the words that are put in brackets, in increasing order
+     * @return String of the snippet
+     * @throws FileNotFoundException If the doc's path is invalid
+     */
+    String snippet(int start, int end, File doc, long[] offsets, int[] marked) throws FileNotFoundException {
+        long time = QueryMetrics.start();
+        if (start < 0)
+            start = 0;
+        
+        //Finds the checkpoint at or before the start of the snippet
+        int checkpoint = offsets == null ? 0 : Math.min(start / CHECKPOINT, offsets.length - 1);
+        long offset = checkpoint == 0 ? 0 : offsets[checkpoint];
         
-        for(int i = 0; i < locations.size(); i++) {
-            if (locations.get(i).getKey().equals(doc)) {
-                location = locations.get(i).getValue();
-                break;
+        InputStream in = Documents.open(doc);
+        WordReader input = new WordReader(in, offset, checkpoint * CHECKPOINT);
+        StringBuilder snippet = new StringBuilder();
+        try {
+            skip(in, offset);
+            int count = checkpoint * CHECKPOINT;
+            int mark = 0;
+            String word;
+            while(count <= end && (word = input.next()) != null) {
+                if (count > start)
+                    snippet.append(' ');
+                if (count >= start) {
+                    while (mark < marked.length && marked[mark] < count)
+                        mark++;
+                    if (mark < marked.length && marked[mark] == count)
+                        snippet.append('[').append(word).append(']');
+                    else
+                        snippet.append(word);
+                }
+                count++;
             }
+        } catch (IOException e) {
+            FileNotFoundException notFound = new FileNotFoundException(doc + " cannot be read");
+            notFound.initCause(e);
+            throw notFound;
+        } finally {
+            close(input);
+            QueryMetrics.add(QueryMetrics.Stage.SNIPPET, time);
         }
         
-        if (location == 0) {
-            input.close();
-            return null;
+        return snippet.toString();
+    }
+    
+    /**
+     * Skips to an offset in a document. Plain files seek straight to it, compressed files are decompressed up to it.
+     * @param in The contents of the document
+     * @param offset The number of bytes to skip
+     * @throws IOException If the document ends before the offset
+     */
+    private static void skip(InputStream in, long offset) throws IOException {
+        while (offset > 0) {
+            long n = in.skip(offset);
+            if (n <= 0) {
+                if (in.read() < 0)
+                    throw new EOFException();
+                n = 1;
+            }
+            offset -= n;
         }
-            
-        
-        int start = location-length;
-        int end = location+length;
-        
-        if (start <= 0)
-            start = 1;
-        
-        String snippet = "";
-        int count = 0;
-        while(input.hasNext() && count <= end) {
-            count++;
-            String in = input.next();
-            if(count == start)
-                snippet += in;
-            if (count > start && count <= end)
-                snippet += " " + in;
+    }
+
+    /**
+     * Formats a word the same way terms were when being placed in the inverted index
+     * @param w The word as given by the user
+     * @return The word without punctuation and numbers, in lower case
+     */
+    static String normalize(String w) {
+        Token token = new Token(w);
+        WORDS.process(token);
+        return token.toString();
+    }
+
+    /**
+     * Formats a term of a query the same way as a word, but keeps the wildcards * and ?, and the ~ at the end of
+     * a fuzzy term with the number of edits it allows, which is MAX_EDITS if no number is given
+     * @param w The term as given by the user
+     * @return The term without other punctuation and numbers, in lower case
+     */
+    static String normalizeTerm(String w) {
+        int tilde = w.lastIndexOf('~');
+        if (tilde >= 0 && w.substring(tilde + 1).matches("\\d?")) {
+            String word = normalize(w.substring(0, tilde));
+            int edits = tilde == w.length() - 1 ? FuzzyMatcher.MAX_EDITS
+                    : Math.min(Integer.parseInt(w.substring(tilde + 1)), FuzzyMatcher.MAX_EDITS);
+            return word.equals("") ? "" : word + "~" + edits;
         }
-        
-        input.close();
-        return snippet;
+        Token token = new Token(w);
+        TERMS.process(token);
+        return token.toString();
     }
-    
+
     /**
-     * Searches for each word of the query and returns the documents that contain all the words that 
-     * are not stop words.
-     * @param query The set of words that will be searched in the corpus
-     * @param output The path of the output file
-     * @param graphic Indicates what type of output is used, 0=txt file, 1=gui, 2=both
-     * @throws FileNotFoundException If the output path is invalid
+     * @param t A term of a query
+     * @return True if the term stands for the words it matches, which it does if it has wildcards or is fuzzy
      */
-    public void searchWords(String query, String output, int length, int graphic) throws FileNotFoundException {
-        PrintWriter writer = new PrintWriter(output);
+    static boolean isExpanded(String t) {
+        return WildcardIndex.isWildcard(t) || FuzzyMatcher.isFuzzy(t);
+    }
+
+    /**
+     * Uses Porter's Algorithm to get the stem of a word
+     * @param word The word to be stemmed
+     * @return The stem of the word
+     */
+    static String stem(String word) {
+        return Analyzer.Stem.stem(word);
+    }
+
+    /**
+     * Splits a query into the terms that are looked up in the index, leaving out stop words, and words whose
+     * stem is a stop word when searching the stemmed index
+     * @param dictionary The dictionary of the index, which has the stems of the words of the corpus
+     * @param query The query string inputted by the user
+     * @param useStemmed Leaves out words whose stem is a stop word if true
+     * @return The terms of the query in the order they were given, not stemmed
+     */
+    private Query queryTerms(Terms dictionary, String query, boolean useStemmed) {
         String[] w = query.split(" ");
-        LinkedList<File> results = null;
-        
-        //Formats all the words in the same way the terms of the index were formatted
-        LinkedList<String> tempList = new LinkedList<>();
-        for (int i = 0; i < w.length; i ++) {
-            String t = w[i].replaceAll("\\p{Punct}", "").replaceAll("\\d", "").toLowerCase();
-            if (!t.equals("")) {
-                tempList.add(t);
+        LinkedList<String[]> groups = new LinkedList<>();
+        LinkedList<String> excluded = new LinkedList<>();
+        LinkedList<int[]> near = new LinkedList<>();
+        int left = -1;
+        int[] pending = null;
+        for (int i = 0; i < w.length; i++) {
+            if (w[i].equals(""))
+                continue;
+            //NEAR/k joins the groups of the words on either side of it, and is left out if either of them is a
+            //stop word or an excluded word
+            if (w[i].matches("NEAR/\\d{1,9}")) {
+                pending = left < 0 ? null : new int[] {left, -1, Integer.parseInt(w[i].substring(5))};
+                left = -1;
+                continue;
             }
-        }
-        String[] words = Arrays.stream(tempList.toArray()).toArray(String[]::new);
-        
-        for (int i = 0; i < words.length; i++) {
-            if (!stopList.contains(words[i].toLowerCase())) {
-                Hashtable<File, Integer> search = search(words[i], false);
-                if (search == null) {
-                    results = new LinkedList<>();
-                    break;
-                }
-                if (results == null) {
-                    LinkedList<File> temp = new LinkedList<>();
-                    search.forEach((k, v) -> {
-                        temp.add(k);
-                    });
-                    results = temp;
-                } else {
-                    LinkedList<File> resultsTemp = results;
-                    LinkedList<File> temp = new LinkedList<>();
-                    search.forEach((k, v) -> {
-                        if (resultsTemp.contains(k))
-                            temp.add(k);
-                    });
-                    results = temp;
+            //The - and | are taken off before the word is normalized, which would remove them. Terms with
+            //wildcards and fuzzy terms are not stop words.
+            boolean exclude = w[i].startsWith("-");
+            String[] alternatives = (exclude ? w[i].substring(1) : w[i]).split("\\|");
+            LinkedList<String> group = new LinkedList<>();
+            for (int j = 0; j < alternatives.length; j++) {
+                String t = normalizeTerm(alternatives[j]);
+                if (!t.equals("") && !stopWords.contains(t)) {
+                    if (!useStemmed || isExpanded(t) || !stopWords.contains(dictionary.stemOf(t)))
+                        group.add(t);
                 }
             }
-        }
-        
-        if (graphic == 0 || graphic == 2) {
-            if (results.isEmpty()) {
-                writer.println("No results found for: " + query);
-                writer.close();
-            } else {
-                writer.println("Search Results for: " + query);
-                for (int i = 0; i < results.size(); i++) {
-                    writer.println(results.get(i).getName());
-                    for (int j = 0; j < words.length; j++) {
-                        if (!stopList.contains(words[j].toLowerCase()))
-                            writer.println("\t\"..." + snippet(length, words[j], results.get(i), false) + "...\"");
-                    }
+            left = -1;
+            if (exclude) {
+                excluded.addAll(group);
+            } else if (!group.isEmpty()) {
+                groups.add(group.toArray(new String[group.size()]));
+                left = groups.size() - 1;
+                if (pending != null) {
+                    pending[1] = left;
+                    near.add(pending);
                 }
-                writer.close();
             }
+            pending = null;
         }
-        
-        if (graphic == 1 || graphic == 2) {
-           //Display to gui
-            displayWords(query, results, words, length); 
+        return new Query(groups.toArray(new String[groups.size()][]), excluded.toArray(new String[excluded.size()]),
+                near.toArray(new int[near.size()][]));
+    }
+
+    /**
+     * Finds the ids to look up for a term of a query
+     * @param snapshot The snapshot that is searched
+     * @param t The term, not stemmed
+     * @param useStemmed Gives the ids of the stems if true
+     * @return The id of the term, or the ids of the words it matches if it has wildcards or is fuzzy
+     */
+    private int[] termIds(IndexSnapshot snapshot, String t, boolean useStemmed) {
+        Terms dictionary = snapshot.getTerms();
+        if (!isExpanded(t))
+            return new int[] {dictionary.id(t, useStemmed)};
+        long start = QueryMetrics.start();
+        int[] ids = FuzzyMatcher.isFuzzy(t) ? fuzzyIds(snapshot, t) : snapshot.getWildcards().expand(t, expansions);
+        QueryMetrics.add(QueryMetrics.Stage.EXPAND, start);
+        if (useStemmed) {
+            for (int i = 0; i < ids.length; i++)
+                ids[i] = dictionary.stem(ids[i]);
         }
+        return ids;
     }
-    
+
     /**
-     * Searches each word of the query and prints the set of documents that contain all the words that are not 
-     * stop words, and then does the same but for the stemmed words, printing any documents that may not have
-     * appeared in the previous search 
-     * @param query The set of words that will be searched in the corpus
-     * @param output The path of the output file
-     * @param graphic Indicates what type of output is used, 0=txt file, 1=gui, 2=both
-     * @throws FileNotFoundException If the output path is invalid
+     * Finds the words within the edits of a fuzzy term. The closest words come first, and words at the same
+     * distance are ranked by the number of documents they appear in, so the expansion limit leaves out the
+     * rarest of the furthest words.
+     * @param snapshot The snapshot that is searched
+     * @param t The fuzzy term, which ends in ~ and the number of edits
+     * @return The ids of the words, at most the expansion limit
      */
-    public void searchWordsStemmed (String query, String output, int length, int graphic) throws FileNotFoundException {
-        PrintWriter writer = new PrintWriter(output);
-        String[] w = query.split(" ");
-        LinkedList<File> results = null;
-        LinkedList<File> stemResults = null;
-        
-        //Formats the words in the query
-        LinkedList<String> tempList = new LinkedList<>();
-        for (int i = 0; i < w.length; i ++) {
-            String t = w[i].replaceAll("\\p{Punct}", "").replaceAll("\\d", "").toLowerCase();
-            if (!t.equals("")) {
-                tempList.add(t);
+    private int[] fuzzyIds(IndexSnapshot snapshot, String t) {
+        int tilde = t.lastIndexOf('~');
+        int[][] matches = FuzzyMatcher.match(snapshot.getTerms(), t.substring(0, tilde),
+                Integer.parseInt(t.substring(tilde + 1)));
+        Map<Integer, DocBitmap> bitmaps = snapshot.getBitmaps(false);
+        List<Integer> ranked = new ArrayList<>();
+        for (int[] distance : matches) {
+            List<int[]> byDocs = new ArrayList<>();
+            for (int id : distance) {
+                DocBitmap docs = bitmaps.get(id);
+                List<Map.Entry<File, Integer>> list = snapshot.getPostings(id, false);
+                int count = docs != null ? docs.cardinality()
+                        : list == null ? 0 : docIds(list, snapshot.getDocIds()).length;
+                byDocs.add(new int[] {id, count});
             }
+            byDocs.sort((a, b) -> Integer.compare(b[1], a[1]));
+            for (int i = 0; i < byDocs.size() && ranked.size() < expansions; i++)
+                ranked.add(byDocs.get(i)[0]);
         }
-        String[] words = Arrays.stream(tempList.toArray()).toArray(String[]::new);
-        String[] stemmedWords = new String[words.length];
-        
-        for (int i = 0; i < words.length; i++) {
-            //gets file list for the unstemmed words
-            if(!stopList.contains(words[i].toLowerCase())) {
-                Hashtable<File, Integer> search = search(words[i], false);
-                if (search == null) {
-                    results = new LinkedList<>();
-                    break;
-                }
-                if (results == null) {
-                    LinkedList<File> temp = new LinkedList<>();
-                    search.forEach((k, v) -> {
-                        temp.add(k);
-                    });
-                    results = temp;
-                } else {
-                    LinkedList<File> resultsTemp = results;
-                    LinkedList<File> temp = new LinkedList<>();
-                    search.forEach((k, v) -> {
-                        if (resultsTemp.contains(k))
-                            temp.add(k);
-                    });
-                    results = temp;
-                }  
-            }
-        }
-        for(int i = 0; i < words.length; i++) {    
-            //get file list for stemmed word
-            Stemmer stem = new Stemmer();
-            for (int j = 0; j < words[i].length(); j++) {
-                stem.add(words[i].charAt(j));
-            }
-            stem.stem();
-            String stemWord = stem.toString().toLowerCase();
-            stemmedWords[i] = stemWord;
-            if (!stopList.contains(stemWord)) {
-                Hashtable<File, Integer> search = search(stemWord, true);
-                if (search == null) {
-                    stemResults = new LinkedList<>();
-                    break;
+        return ranked.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * The terms of a query, split into the groups that a document must have one term of each of, and the terms
+     * that a document must not have. Each NEAR is kept as the two groups it joins and the number of words they
+     * can be apart.
+     */
+    private static class Query {
+        private String[][] groups;
+        private String[] excluded;
+        private int[][] near;
+
+        Query(String[][] groups, String[] excluded, int[][] near) {
+            this.groups = groups;
+            this.excluded = excluded;
+            this.near = near;
+        }
+    }
+
+    /**
+     * Iterates over the documents that contain every term of a query. The documents that can match are found
+     * first. The document ids of the rarer words are decoded from their short lists and intersected, shortest
+     * first, and the result is checked against the document sets that the frequent words have ready. The list
+     * of the rarest term is then walked one document at a time, skipping
+     * documents that cannot match, so only the hits that are asked for are made. The lists of the other terms
+     * are walked along with it, and their locations in a document are only gathered when it reaches the
+     * document.
+     */
+    private class HitIterator implements Iterator<SearchResult> {
+        private IndexSnapshot snapshot;
+        private String[] terms;
+        private int docs;
+        private double[] idf;
+        private DocBitmap candidates;
+        private int[][] near;
+        private Cursor[] cursors;
+        private int[] run = new int[16];
+        private int driver;
+        private Iterator<Map.Entry<File, Integer>> postings;
+        private Map.Entry<File, Integer> pending;
+        private SearchResult next;
+        private Duplicates duplicates;
+        private Set<Integer> shown = new HashSet<>();
+
+        /**
+         * Looks up every term, finds the documents that can match and picks the term with the shortest list to
+         * walk
+         * @param snapshot The snapshot of the index that is searched
+         * @param query The terms of the query, not stemmed
+         * @param useStemmed Indicates which index to use, true - stemmed index, false - inverted index
+         */
+        HitIterator(IndexSnapshot snapshot, Query query, boolean useStemmed) {
+            long start = QueryMetrics.start();
+            this.snapshot = snapshot;
+            int n = query.groups.length;
+            terms = new String[n];
+            docs = snapshot.liveDocs();
+            Terms dictionary = snapshot.getTerms();
+            Map<Integer, DocBitmap> bitmaps = snapshot.getBitmaps(useStemmed);
+            List<List<Map.Entry<File, Integer>>> lists = new ArrayList<>(n);
+            DocBitmap[] sets = new DocBitmap[n];
+            int[][] ids = new int[n][];
+            int[] df = new int[n];
+
+            //The hits are labelled with the terms as they are kept in the dictionary, which are the stems for
+            //the stemmed index, and terms with wildcards or fuzzy terms are labelled as they were given. The
+            //lists of the alternatives of a group are merged into one list, and their documents are unioned.
+            for (int i = 0; i < n; i++) {
+                StringJoiner label = new StringJoiner("|");
+                List<List<Map.Entry<File, Integer>>> found = new ArrayList<>();
+                Set<Integer> seen = new HashSet<>();
+                DocBitmap set = null;
+                boolean cached = true;
+                for (String t : query.groups[i]) {
+                    boolean matched = false;
+                    for (int id : termIds(snapshot, t, useStemmed)) {
+                        List<Map.Entry<File, Integer>> list = snapshot.getPostings(id, useStemmed);
+                        //Alternatives with the same stem are only counted once
+                        if (list == null || !seen.add(id))
+                            continue;
+                        found.add(list);
+                        DocBitmap docs = bitmaps.get(id);
+                        if (docs == null)
+                            cached = false;
+                        else
+                            set = set == null ? docs : set.or(docs);
+                        if (!isExpanded(t))
+                            label.add(dictionary.term(id));
+                        matched = true;
+                    }
+                    if (matched && isExpanded(t))
+                        label.add(t);
                 }
-                else if (stemResults == null) {
-                    LinkedList<File> temp = new LinkedList<>();
-                    search.forEach((k, v) -> {
-                        temp.add(k);
-                    });
-                    stemResults = temp;
-                } else {
-                    LinkedList<File> resultsTemp = results;
-                    LinkedList<File> temp = new LinkedList<>();
-                    search.forEach((k, v) -> {
-                        if (resultsTemp.contains(k))
-                            temp.add(k);
-                    });
-                    stemResults = temp;
+                if (found.isEmpty()) {
+                    QueryMetrics.add(QueryMetrics.Stage.LOOKUP, start);
+                    return;
                 }
+                lists.add(mergeAll(found, snapshot.getDocIds()));
+                //A group is checked as a set if every alternative has one, otherwise its documents are taken
+                //from the merged list, which is already in document order
+                if (cached)
+                    sets[i] = set;
+                else
+                    ids[i] = docIds(lists.get(i), snapshot.getDocIds());
+                df[i] = ids[i] != null ? ids[i].length : sets[i].cardinality();
+                terms[i] = label.toString();
+                if (lists.get(i).size() < lists.get(driver).size())
+                    driver = i;
             }
-        }
-        
-        if (graphic == 0 || graphic == 2) {
-            //Print the unstemmed results first
-            if (results.isEmpty()) {
-                writer.println("No results found for: " + query);
-            } else {
-                writer.println("Search Results for: " + query);
-                for (int i = 0; i < results.size(); i++) {
-                    writer.println(results.get(i).getName());
-                    for (int j = 0; j < words.length; j++) {
-                        if (!stopList.contains(words[j].toLowerCase()))
-                            writer.println("\t\"..." + snippet(length, words[j], results.get(i), false) + "...\"");
-                    }
+            QueryMetrics.add(QueryMetrics.Stage.LOOKUP, start);
+            if (n == 0)
+                return;
+            //Deleted documents are taken out of the candidates, so the lists skip over their entries
+            start = QueryMetrics.start();
+            candidates = candidates(ids, sets);
+            if (!snapshot.getDeleted().isEmpty())
+                candidates = candidates.andNot(snapshot.getDeleted());
+            for (String t : query.excluded) {
+                for (int id : termIds(snapshot, t, useStemmed)) {
+                    List<Map.Entry<File, Integer>> list = snapshot.getPostings(id, useStemmed);
+                    if (list != null)
+                        candidates = candidates.andNot(docSet(id, list, bitmaps, snapshot));
                 }
             }
-            writer.println();
-            
-            //Print stemmed results next
-            if (stemResults.isEmpty()) {
-                writer.println("No results found for similar words either");
-                writer.close();
+            if (candidates.isEmpty()) {
+                QueryMetrics.add(QueryMetrics.Stage.INTERSECT, start);
                 return;
             }
+
+            //Every group gives all its locations in each document, which the NEARs and the snippets need
+            near = query.near;
+            duplicates = snapshot.getDuplicates();
+            idf = new double[n];
+            cursors = new Cursor[n];
+            for (int i = 0; i < n; i++) {
+                idf[i] = idf(df[i], docs);
+                if (i != driver)
+                    cursors[i] = new Cursor(lists.get(i), snapshot);
+            }
+            postings = lists.get(driver).iterator();
+            if (postings.hasNext())
+                pending = postings.next();
+            QueryMetrics.add(QueryMetrics.Stage.INTERSECT, start);
+            start = QueryMetrics.start();
+            next = advance();
+            QueryMetrics.add(QueryMetrics.Stage.COUNT, start);
         }
-        
-        //Gets files that did not appear in the results
-        LinkedList<File> otherResults = new LinkedList<>();
-        for (int i = 0; i < stemResults.size(); i++) {
-            if (!results.contains(stemResults.get(i)))
-                otherResults.add(stemResults.get(i));
+
+        /**
+         * Finds the documents that have a term of every group
+         * @param ids The document ids of each group with only rare terms, null for the other groups
+         * @param sets The document set of each group with frequent terms, null for the other groups
+         * @return The documents that can match the query
+         */
+        private DocBitmap candidates(int[][] ids, DocBitmap[] sets) {
+            //The arrays are intersected shortest first, so each intersection is at most as long as the last
+            int[][] arrays = Arrays.stream(ids).filter(a -> a != null)
+                    .sorted((a, b) -> Integer.compare(a.length, b.length)).toArray(int[][]::new);
+            DocBitmap bits = null;
+            for (DocBitmap set : sets) {
+                if (set != null)
+                    bits = bits == null ? set : bits.and(set);
+            }
+            if (arrays.length == 0)
+                return bits;
+            
+            int[] docs = arrays[0].clone();
+            int count = docs.length;
+            for (int i = 1; i < arrays.length && count > 0; i++) {
+                int[] out = new int[count];
+                count = DocIds.intersect(docs, count, arrays[i], arrays[i].length, out);
+                docs = out;
+            }
+            if (bits != null)
+                count = DocIds.filter(docs, count, bits);
+            return DocBitmap.of(docs, count);
         }
-        
-        if (graphic == 0 || graphic == 2) {
-            if (otherResults.isEmpty()) {
-                writer.println("Searches for similar words yielded the same results");
-            } else {
-                writer.println("Search Results for similar words:");
-                for (int i = 0; i < otherResults.size(); i++) {
-                    writer.println(otherResults.get(i).getName());
-                    for (int j = 0; j < stemmedWords.length; j++) {
-                        if (!stopList.contains(stemmedWords[i]))
-                            writer.println("\t\"..." + snippet(length, stemmedWords[j], otherResults.get(i), true) + "...\"");
+
+        /**
+         * Takes the next document from the walked list and checks it against the other terms
+         * @return The next hit, null if there are no more
+         */
+        private SearchResult advance() {
+            while (pending != null) {
+                //Collects the run of entries for one document, which are next to each other in the list
+                File doc = pending.getKey();
+                int count = 0;
+                while (pending != null && pending.getKey().equals(doc)) {
+                    if (count == run.length)
+                        run = Arrays.copyOf(run, 2 * count);
+                    run[count++] = pending.getValue();
+                    pending = postings.hasNext() ? postings.next() : null;
+                }
+                int id = snapshot.getDocId(doc);
+                if (!candidates.contains(id))
+                    continue;
+
+                int[][] locations = new int[terms.length][];
+                int[] counts = new int[terms.length];
+                int[] positions = new int[terms.length];
+                double score = 0;
+                boolean match = true;
+                for (int i = 0; i < terms.length && match; i++) {
+                    if (i == driver) {
+                        locations[i] = Arrays.copyOf(run, count);
+                        Arrays.sort(locations[i]);
+                    } else {
+                        locations[i] = cursors[i].locations(id);
+                    }
+                    if (locations[i] == null) {
+                        match = false;
+                    } else {
+                        counts[i] = locations[i].length;
+                        positions[i] = locations[i][0];
+                        score += counts[i] * idf[i];
+                    }
+                }
+
+                //Each NEAR needs a pair of appearances close enough together, and the closer they are the more
+                //they add to the score. The hit points at the closest pair so its snippets show them.
+                for (int j = 0; j < near.length && match; j++) {
+                    int a = near[j][0];
+                    int b = near[j][1];
+                    int[] window = closest(locations[a], counts[a], locations[b], counts[b]);
+                    int distance = window == null ? Integer.MAX_VALUE : Math.abs(window[1] - window[0]);
+                    if (distance > near[j][2]) {
+                        match = false;
+                    } else {
+                        positions[a] = window[0];
+                        positions[b] = window[1];
+                        score += (idf[a] + idf[b]) / (1 + distance);
                     }
                 }
+                //Only the first hit of each cluster of copies is shown, and it tells how many copies it stands for
+                if (match && (duplicates == null || shown.add(duplicates.cluster(id)))) {
+                    return new SearchResult(InvertedIndex.this, doc, snapshot.getCheckpoints(doc), terms, counts,
+                            positions, locations, score, duplicates == null ? 0 : duplicates.size(id) - 1);
+                }
             }
+            return null;
         }
-        writer.close();
-        
-        //Display results to gui
-        if (graphic == 1 || graphic == 2) {
-            displayWordsStemmed(query, results, otherResults, words, stemmedWords, length);
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public SearchResult next() {
+            if (next == null)
+                throw new NoSuchElementException();
+            SearchResult current = next;
+            long start = QueryMetrics.start();
+            next = advance();
+            QueryMetrics.add(QueryMetrics.Stage.COUNT, start);
+            return current;
         }
     }
-    
+
     /**
-     * This method will display in a gui the results from searching for one word in the query
-     * @param word The word that is being searched for
-     * @param visited The list of files that the word appears in with the number of appearances
-     * @param length The size of the snippet
-     * @throws FileNotFoundException If file is not found
+     * @param id The id of a word
+     * @param list The list of files and locations of the word
+     * @param bitmaps The document sets of the frequent words
+     * @return The set of documents the word appears in, which is made from the list if the word is not frequent
      */
-    private void displayWord (String word, Hashtable<File, Integer> visited, int length) throws FileNotFoundException {
-        LinkedList<String> out = new LinkedList<>();
-        Displayer d = new Displayer(word);
-        
-        if (visited == null) {
-            out.add("No results found");
-            d.displayNonStem(out.toArray());
-            return;
-        }
-        
-        Set<Entry<File, Integer>> vSet = visited.entrySet();
-        for (Entry<File, Integer> e : vSet) {
-            String o = "<html>" + e.getKey().getName() + "<br>";
-            o += "Number of Appearances " + e.getValue() + "<br>"; 
-            o += "First appearance: \"...<xmp>" + snippet(length, word, e.getKey(), false) + "</xmp>...\"</html>";
-            out.add(o);
-        }
-        
-        d.displayNonStem(out.toArray());
+    private static DocBitmap docSet(int id, List<Map.Entry<File, Integer>> list, Map<Integer, DocBitmap> bitmaps,
+            IndexSnapshot snapshot) {
+        DocBitmap docs = bitmaps.get(id);
+        return docs != null ? docs : docSet(list, snapshot.getDocIds());
     }
-    
+
     /**
-     * Displays in a gui the results from searching for one word using stemming
-     * @param word The word searched for by the user
-     * @param stemmedWord The stem of the word after going through Porter's Algorithm
-     * @param visited The list of files where the word appears and the number of times it does
-     * @param visitedStemmed The list of files where the stemmed word appears and the number of times it does
-     * @param length The length of the snippet as set by the user
-     * @throws FileNotFoundException If file is not found
+     * Walks the list of one group of a query along with the list that is walked for the hits, gathering the
+     * locations of the group in one document at a time. The documents are asked for in increasing order and the
+     * list is in document order, so the list is only walked once, and the locations of a document are only
+     * gathered when the walked list reaches it.
      */
-    private void displayWordStemmed (String word, String stemmedWord, Hashtable<File, Integer> visited,
-            Hashtable<File, Integer> visitedStemmed, int length) throws FileNotFoundException {
-        //If the stemmed word was the same, then visitedStemmed would be null and displayWord would be called instead
-        if (visitedStemmed == null) {
-            displayWord(word, visited, length);
-            return;
+    private static class Cursor {
+        private IndexSnapshot snapshot;
+        private Iterator<Map.Entry<File, Integer>> entries;
+        private Map.Entry<File, Integer> pending;
+        private int pendingId;
+        private int[] run = new int[16];
+
+        /**
+         * @param list The list of files and locations of the group, in document order
+         * @param snapshot The snapshot the list is from
+         */
+        Cursor(List<Map.Entry<File, Integer>> list, IndexSnapshot snapshot) {
+            this.snapshot = snapshot;
+            entries = list.iterator();
+            step();
         }
-        
-        Displayer d = new Displayer(word);
-        LinkedList<String> out = new LinkedList<>();
-        LinkedList<String> outS = new LinkedList<>();
-        
-        if (visited == null) {
-            out.add("No results found");
-        } else {
-            Set<Entry<File, Integer>> vSet = visited.entrySet();
-            for (Entry<File, Integer> e : vSet) {
-                String o = "<html>" + e.getKey().getName() + "<br>";
-                o += "Number of Appearances " + e.getValue() + "<br>"; 
-                o += "First appearance: \"...<xmp>" + snippet(length, word, e.getKey(), false) + "</xmp>...\"</html>";
-                out.add(o);
-            }
+
+        /**
+         * Moves to the next entry of the list, only looking up its document id when the document changes
+         */
+        private void step() {
+            File last = pending == null ? null : pending.getKey();
+            pending = entries.hasNext() ? entries.next() : null;
+            if (pending != null && !pending.getKey().equals(last))
+                pendingId = snapshot.getDocId(pending.getKey());
         }
-        
-        Set<Entry<File, Integer>> sSet = visitedStemmed.entrySet();
-        for (Entry<File, Integer> e : sSet) {
-            String o = "<html>" + e.getKey().getName() + "<br>";
-            o += "Number of Appearances " + e.getValue() + "<br>";
-            o += "First appearance: \"...<xmp>" + snippet(length, stemmedWord, e.getKey(), true) + "</xmp>...\"</html>";
-            outS.add(o);
+
+        /**
+         * @param id A document id, larger than any asked for before
+         * @return The locations of the group in the document in increasing order, null if it has none
+         */
+        int[] locations(int id) {
+            while (pending != null && pendingId < id)
+                step();
+            int n = 0;
+            while (pending != null && pendingId == id) {
+                if (n == run.length)
+                    run = Arrays.copyOf(run, 2 * n);
+                run[n++] = pending.getValue();
+                step();
+            }
+            if (n == 0)
+                return null;
+            int[] found = Arrays.copyOf(run, n);
+            Arrays.sort(found);
+            return found;
         }
-        
-        d.displayStem(stemmedWord, out.toArray(), outS.toArray());
     }
-    
+
     /**
-     * Displays multi-word queries to a GUI, without stemming
-     * @param query The user inputted query
-     * @param results The list of files that have all the non-stopword query terms
-     * @param words The list of all words in the query
-     * @param length The size of the snippet as indicated by the user
-     * @throws FileNotFoundException If the file cannot be found
+     * Finds the closest pair of appearances of two words in a document by walking both of their locations once,
+     * always moving on from the smaller location. The two appearances must be at different locations, so a word
+     * on both sides of a NEAR needs to appear twice.
+     * @param a The locations of one word, in increasing order
+     * @param na The number of locations in a
+     * @param b The locations of the other word, in increasing order
+     * @param nb The number of locations in b
+     * @return The location from a and the location from b that are closest together, null if there is no pair at
+     * different locations
      */
-    private void displayWords(String query, LinkedList<File> results, String[] words, int length) throws FileNotFoundException {
-        LinkedList<String> out = new LinkedList<>();
-        Displayer d = new Displayer(query);
-        
-        if (results == null) {
-            out.add("No results found");
-            d.displayNonStem(out.toArray());
-            return;
+    static int[] closest(int[] a, int na, int[] b, int nb) {
+        int[] best = null;
+        int bestDistance = Integer.MAX_VALUE;
+        boolean shared = false;
+        int i = 0;
+        int j = 0;
+        while (i < na && j < nb) {
+            int distance = Math.abs(a[i] - b[j]);
+            if (distance == 0) {
+                shared = true;
+            } else if (distance < bestDistance) {
+                bestDistance = distance;
+                best = new int[] {a[i], b[j]};
+            }
+            if (a[i] < b[j])
+                i++;
+            else
+                j++;
         }
-        
-        for(int i = 0; i < results.size(); i++) {
-            String o = "<html>" + results.get(i).getName() + "<br>";
-            for (int j = 0; j < words.length; j++) {
-                if (!stopList.contains(words[j].toLowerCase())) {
-                    o += "\"...<xmp>" + snippet(length, words[j], results.get(i), false) + "</xmp>...\"";
-                    if (j < words.length-1)
-                        o += "<br>";
-                }
-            } 
-            o += "</html>";
-            out.add(o);
+        if (!shared)
+            return best;
+
+        //When the words share locations the walk can move past the closest pair at different locations, so
+        //every location of a is checked against the locations of b on either side of it instead
+        int k = 0;
+        for (i = 0; i < na; i++) {
+            while (k < nb && b[k] < a[i])
+                k++;
+            int after = k;
+            while (after < nb && b[after] == a[i])
+                after++;
+            if (k > 0 && a[i] - b[k - 1] < bestDistance) {
+                bestDistance = a[i] - b[k - 1];
+                best = new int[] {a[i], b[k - 1]};
+            }
+            if (after < nb && b[after] - a[i] < bestDistance) {
+                bestDistance = b[after] - a[i];
+                best = new int[] {a[i], b[after]};
+            }
         }
-        
-        d.displayNonStem(out.toArray());
+        return best;
     }
-    
+
     /**
-     * Displays the results for multi word queries with stemming turned on
-     * @param query The query string inputed by the user
-     * @param results The list of returned files from the search for the original query
-     * @param stemmedResults The list of returned files from the search for the stemmed query
-     * @param words The query words separated into an array
-     * @param stemmedWords The stemmed query words separated into an array
-     * @param length The size of the snippet as defined by the user
-     * @throws FileNotFoundException If the file path is invalid
+     * @param docs The number of documents a word appears in
+     * @param corpus The number of documents in the corpus
+     * @return The inverse document frequency of the word
      */
-    private void displayWordsStemmed(String query, LinkedList<File> results, LinkedList<File> stemmedResults,
-            String[] words, String[] stemmedWords, int length) throws FileNotFoundException {
-        LinkedList<String> out = new LinkedList<>();
-        LinkedList<String> outS = new LinkedList<>();
-        Displayer d = new Displayer(query);
-        
-        if (results == null) {
-            out.add("No results found");
-        } else {
-            for (int i = 0; i < results.size(); i++) {
-                String o = "<html>" + results.get(i).getName() + "<br>";
-                for (int j = 0; j < words.length; j++) {
-                    if (!stopList.contains(words[j].toLowerCase())) {
-                        o += "\"...<xmp>" + snippet(length, words[j], results.get(i), false) + "</xmp>...\"";
-                        if (j < words.length-1)
-                            o += "<br>";
-                    }
-                }
-                o += "</html>";
-                out.add(o);
-            }
-        }
-        
-        if (stemmedResults.isEmpty()) {
-            outS.add("Results for similar searches are the same");
-        } else {
-            for (int i = 0; i < stemmedResults.size(); i++) {
-                String o = "<html>" + results.get(i).getName() + "<br>";
-                for (int j = 0; j < stemmedWords.length; j++) {
-                    if (!stopList.contains(stemmedWords[i])) {
-                        o += "\"...<xmp>" + snippet(length, stemmedWords[j], stemmedResults.get(i), true) + "</xmp>...\"";
-                        if (j < stemmedWords.length-1)
-                            o += "<br>";
-                    }
-                }
-                o += "</html>";
-                outS.add(o);
-            }
-        }
-        
-        d.displayStem("", out.toArray(), outS.toArray());
+    private static double idf(int docs, int corpus) {
+        return Math.log(1 + (double) corpus / docs);
     }
 }
@@ -0,0 +1,138 @@
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+
+/**
+ * The OffHeapMemory class is a block of memory outside of the java heap, so the garbage collector never has to
+ * scan what is kept in it. The memory is made of direct buffers of up to 1GB each, so blocks larger than 2GB can
+ * be used. The memory is freed as soon as close is called instead of waiting for the garbage collector, and
+ * reading it after that throws an IllegalStateException.
+ *
+ */
+
+public class OffHeapMemory {
+    private static final int CHUNK_BITS = 30;
+    private static final long CHUNK_MASK = (1L << CHUNK_BITS) - 1;
+
+    private ByteBuffer[] chunks;
+    private long size;
+
+    /**
+     * Constructor that allocates the memory, which starts filled with zeros
+     * @param size The number of bytes
+     */
+    public OffHeapMemory(long size) {
+        this.size = size;
+        chunks = new ByteBuffer[(int) ((size + CHUNK_MASK) >>> CHUNK_BITS)];
+        for (int i = 0; i < chunks.length; i++)
+            chunks[i] = ByteBuffer.allocateDirect((int) Math.min(size - ((long) i << CHUNK_BITS), 1L << CHUNK_BITS));
+    }
+
+    /**
+     * @return The number of bytes
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * @param pos The position of the byte
+     * @return The byte
+     */
+    public byte get(long pos) {
+        return chunk(pos).get((int) (pos & CHUNK_MASK));
+    }
+
+    /**
+     * @param pos The position of the byte
+     * @param value The byte
+     */
+    public void put(long pos, byte value) {
+        chunk(pos).put((int) (pos & CHUNK_MASK), value);
+    }
+
+    /**
+     * @param pos The position of the int, which must be a multiple of 4
+     * @return The int
+     */
+    public int getInt(long pos) {
+        return chunk(pos).getInt((int) (pos & CHUNK_MASK));
+    }
+
+    /**
+     * @param pos The position of the int, which must be a multiple of 4
+     * @param value The int
+     */
+    public void putInt(long pos, int value) {
+        chunk(pos).putInt((int) (pos & CHUNK_MASK), value);
+    }
+
+    /**
+     * @param pos The position of the long, which must be a multiple of 8
+     * @return The long
+     */
+    public long getLong(long pos) {
+        return chunk(pos).getLong((int) (pos & CHUNK_MASK));
+    }
+
+    /**
+     * @param pos The position of the long, which must be a multiple of 8
+     * @param value The long
+     */
+    public void putLong(long pos, long value) {
+        chunk(pos).putLong((int) (pos & CHUNK_MASK), value);
+    }
+
+    /**
+     * Frees the memory. Nothing may be reading the memory when it is closed.
+     */
+    public void close() {
+        ByteBuffer[] freed = chunks;
+        chunks = null;
+        if (freed != null) {
+            for (ByteBuffer chunk : freed)
+                free(chunk);
+        }
+    }
+
+    /**
+     * @param pos A position in the memory
+     * @return The buffer holding the position
+     */
+    private ByteBuffer chunk(long pos) {
+        ByteBuffer[] c = chunks;
+        if (c == null)
+            throw new IllegalStateException("Off heap memory has been freed");
+        return c[(int) (pos >>> CHUNK_BITS)];
+    }
+
+    /**
+     * Frees a direct buffer straight away. There is no public way to do this, so the cleaner of the buffer is
+     * called the way the running version of java allows. If neither way works the buffer is freed by the
+     * garbage collector once it is no longer used.
+     * @param buffer The direct buffer
+     */
+    private static void free(ByteBuffer buffer) {
+        try {
+            //Java 9 and later
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            invokeCleaner.invoke(theUnsafe.get(null), buffer);
+        } catch (NoSuchMethodException e) {
+            //Java 8
+            try {
+                Method cleaner = buffer.getClass().getMethod("cleaner");
+                cleaner.setAccessible(true);
+                Object c = cleaner.invoke(buffer);
+                if (c != null)
+                    c.getClass().getMethod("clean").invoke(c);
+            } catch (ReflectiveOperationException | RuntimeException e2) {
+                //Left for the garbage collector
+            }
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            //Left for the garbage collector
+        }
+    }
+}
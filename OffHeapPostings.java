@@ -0,0 +1,111 @@
+import java.io.File;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * The OffHeapPostings class keeps the lists of an index outside of the java heap. Each entry is kept as two ints,
+ * the position of the document in the corpus and the location of the word, instead of as an entry object, so an
+ * index of any size only leaves a few objects on the heap. The lists are read back as lists of entries, which
+ * are made as they are asked for and thrown away straight after.
+ *
+ */
+
+public class OffHeapPostings extends AbstractList<List<Map.Entry<File, Integer>>> implements RandomAccess {
+    private File[] corpus;
+    private int size;
+    private OffHeapMemory starts;
+    private OffHeapMemory postings;
+
+    /**
+     * Constructor that copies an index out of the heap. The index can be thrown away afterwards.
+     * @param index The lists of the index by id, with null for ids that have no list
+     * @param corpus The files that were indexed, every file in the index must be one of them
+     */
+    public OffHeapPostings(List<List<Map.Entry<File, Integer>>> index, File[] corpus) {
+        this.corpus = corpus;
+        size = index.size();
+        Map<File, Integer> order = new HashMap<>();
+        for (int i = 0; i < corpus.length; i++)
+            order.put(corpus[i], i);
+
+        //The start of each list is kept as a long and its length as an int, a length of -1 marks a missing list
+        long total = 0;
+        starts = new OffHeapMemory(16L * size);
+        for (int id = 0; id < size; id++) {
+            List<Map.Entry<File, Integer>> list = index.get(id);
+            starts.putLong(16L * id, total);
+            starts.putInt(16L * id + 8, list == null ? -1 : list.size());
+            if (list != null)
+                total += list.size();
+        }
+
+        postings = new OffHeapMemory(8 * total);
+        long pos = 0;
+        for (List<Map.Entry<File, Integer>> list : index) {
+            if (list == null)
+                continue;
+            for (Map.Entry<File, Integer> entry : list) {
+                postings.putInt(pos, order.get(entry.getKey()));
+                postings.putInt(pos + 4, entry.getValue());
+                pos += 8;
+            }
+        }
+    }
+
+    /**
+     * @param id The id of a word
+     * @return The list of files and locations of the word, null if it has no list
+     */
+    @Override
+    public List<Map.Entry<File, Integer>> get(int id) {
+        if (id < 0 || id >= size)
+            throw new IndexOutOfBoundsException("Id: " + id);
+        int length = starts.getInt(16L * id + 8);
+        if (length < 0)
+            return null;
+        return new Postings(starts.getLong(16L * id), length);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Frees the memory holding the lists. No search may be reading the lists when they are closed.
+     */
+    public void close() {
+        starts.close();
+        postings.close();
+    }
+
+    /**
+     * One list of the index, read straight from the memory
+     */
+    private class Postings extends AbstractList<Map.Entry<File, Integer>> implements RandomAccess {
+        private long start;
+        private int length;
+
+        Postings(long start, int length) {
+            this.start = start;
+            this.length = length;
+        }
+
+        @Override
+        public Map.Entry<File, Integer> get(int i) {
+            if (i < 0 || i >= length)
+                throw new IndexOutOfBoundsException("Index: " + i);
+            long pos = 8 * (start + i);
+            return new AbstractMap.SimpleImmutableEntry<>(corpus[postings.getInt(pos)], postings.getInt(pos + 4));
+        }
+
+        @Override
+        public int size() {
+            return length;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * The OffHeapTerms class keeps a finished term dictionary outside of the java heap. The words are kept as utf-8
+ * bytes one after the other, with every id sorted by its bytes so a word is found by a binary search instead of
+ * a hash map. The sorted order of the words of the corpus is copied from the dictionary, so prefixes and fuzzy
+ * terms scan the words in the same order on and off the heap. The stem of each word is kept as an int. Words are
+ * only turned back into strings when they are asked for. Nothing can be added to the dictionary once it is moved
+ * out of the heap.
+ *
+ */
+
+public class OffHeapTerms implements Terms {
+    private int size;
+    private int stemmed;
+    private int sortedSize;
+    private OffHeapMemory starts;
+    private OffHeapMemory bytes;
+    private OffHeapMemory byBytes;
+    private OffHeapMemory sorted;
+    private OffHeapMemory stems;
+
+    /**
+     * Constructor that copies a finished dictionary out of the heap. The dictionary can be thrown away afterwards.
+     * @param terms The dictionary, whose stems have already been worked out
+     */
+    public OffHeapTerms(TermDictionary terms) {
+        size = terms.size();
+        stemmed = terms.stemmed();
+        byte[][] words = new byte[size][];
+        long total = 0;
+        for (int id = 0; id < size; id++) {
+            words[id] = terms.term(id).getBytes(StandardCharsets.UTF_8);
+            total += words[id].length;
+        }
+
+        //The bytes of each word start where the bytes of the word before it end
+        starts = new OffHeapMemory(8L * (size + 1));
+        bytes = new OffHeapMemory(total);
+        long pos = 0;
+        for (int id = 0; id < size; id++) {
+            starts.putLong(8L * id, pos);
+            for (byte b : words[id])
+                bytes.put(pos++, b);
+        }
+        starts.putLong(8L * size, pos);
+
+        //Sorting every id by the utf-8 bytes gives the same order that the binary search of id compares in
+        Integer[] order = new Integer[size];
+        for (int id = 0; id < size; id++)
+            order[id] = id;
+        Arrays.sort(order, (a, b) -> compare(words[a], words[b]));
+        byBytes = new OffHeapMemory(4L * size);
+        for (int i = 0; i < size; i++)
+            byBytes.putInt(4L * i, order[i]);
+        sortedSize = terms.sortedSize();
+        sorted = new OffHeapMemory(4L * sortedSize);
+        for (int i = 0; i < sortedSize; i++)
+            sorted.putInt(4L * i, terms.sortedId(i));
+
+        stems = new OffHeapMemory(4L * stemmed);
+        for (int id = 0; id < stemmed; id++)
+            stems.putInt(4L * id, terms.stem(id));
+    }
+
+    @Override
+    public int id(String term) {
+        byte[] word = term.getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int id = byBytes.getInt(4L * mid);
+            int c = compare(id, word);
+            if (c < 0)
+                low = mid + 1;
+            else if (c > 0)
+                high = mid - 1;
+            else
+                return id;
+        }
+        return -1;
+    }
+
+    @Override
+    public String term(int id) {
+        if (id < 0 || id >= size)
+            throw new IndexOutOfBoundsException("Id: " + id);
+        long start = starts.getLong(8L * id);
+        byte[] word = new byte[(int) (starts.getLong(8L * id + 8) - start)];
+        for (int i = 0; i < word.length; i++)
+            word[i] = bytes.get(start + i);
+        return new String(word, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int stem(int id) {
+        if (id < 0 || id >= stemmed)
+            throw new IndexOutOfBoundsException("Id: " + id);
+        return stems.getInt(4L * id);
+    }
+
+    @Override
+    public int stemmed() {
+        return stemmed;
+    }
+
+    @Override
+    public int sortedSize() {
+        return sortedSize;
+    }
+
+    @Override
+    public int sortedId(int i) {
+        if (i < 0 || i >= sortedSize)
+            throw new IndexOutOfBoundsException("Position: " + i);
+        return sorted.getInt(4L * i);
+    }
+
+    /**
+     * Frees the memory holding the dictionary. No search may be using the dictionary when it is closed.
+     */
+    public void close() {
+        starts.close();
+        bytes.close();
+        byBytes.close();
+        sorted.close();
+        stems.close();
+    }
+
+    /**
+     * Compares a word in the memory to the bytes of another word
+     * @param id The id of the word in the memory
+     * @param word The utf-8 bytes of the other word
+     * @return Less than 0, 0 or more than 0 if the word in memory comes before, is the same as or comes after
+     * the other word
+     */
+    private int compare(int id, byte[] word) {
+        long start = starts.getLong(8L * id);
+        int length = (int) (starts.getLong(8L * id + 8) - start);
+        int n = Math.min(length, word.length);
+        for (int i = 0; i < n; i++) {
+            int c = (bytes.get(start + i) & 0xff) - (word[i] & 0xff);
+            if (c != 0)
+                return c;
+        }
+        return length - word.length;
+    }
+
+    /**
+     * @param a The utf-8 bytes of a word
+     * @param b The utf-8 bytes of another word
+     * @return The order of the words by unsigned bytes, which is the order of their unicode code points
+     */
+    private static int compare(byte[] a, byte[] b) {
+        int n = Math.min(a.length, b.length);
+        for (int i = 0; i < n; i++) {
+            int c = (a[i] & 0xff) - (b[i] & 0xff);
+            if (c != 0)
+                return c;
+        }
+        return a.length - b.length;
+    }
+}
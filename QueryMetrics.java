@@ -0,0 +1,364 @@
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+/**
+ * The QueryMetrics class records how long each stage of a search takes, for each type of search. The time a
+ * search spends in a stage is added up while it runs, and when it ends the totals go into a histogram for the
+ * type of search and the stage, which gives the 50th, 99th and 99.9th percentiles. The histograms can be read
+ * through JMX and printed every few seconds.
+ *
+ * Metrics are off to begin with. Until they are turned on, nothing is made for them and every place that is
+ * timed only checks a flag, without reading the clock.
+ *
+ */
+
+public class QueryMetrics {
+    private static volatile boolean enabled = false;
+    private static final ThreadLocal<Trace> TRACE = new ThreadLocal<>();
+    private static Latency[][] latencies;
+    private static ScheduledExecutorService dumper;
+
+    /**
+     * The types of search, which each have their own histograms
+     */
+    public enum Type {
+        WORD, WORD_STEMMED, WORDS, WORDS_STEMMED, DOC
+    }
+
+    /**
+     * The stages of a search. LOOKUP finds the lists of the terms, INTERSECT finds the documents that can match,
+     * COUNT makes the hits one document at a time, SNIPPET reads snippets from the documents and OUTPUT waits to
+     * hand the results to the output file. EXPAND is the part of LOOKUP and INTERSECT spent expanding terms with
+     * wildcards and fuzzy terms into words. TOTAL is the whole search, including the time between the stages.
+     */
+    public enum Stage {
+        LOOKUP, EXPAND, INTERSECT, COUNT, SNIPPET, OUTPUT, TOTAL
+    }
+
+    /**
+     * The percentiles of one histogram as they are shown through JMX, in microseconds
+     */
+    public interface LatencyMBean {
+        /**
+         * @return The number of searches recorded
+         */
+        long getCount();
+
+        /**
+         * @return The mean time in microseconds
+         */
+        double getMean();
+
+        /**
+         * @return The median time in microseconds
+         */
+        double getP50();
+
+        /**
+         * @return The 99th percentile in microseconds
+         */
+        double getP99();
+
+        /**
+         * @return The 99.9th percentile in microseconds
+         */
+        double getP999();
+
+        /**
+         * @return The longest time in microseconds
+         */
+        double getMax();
+
+        /**
+         * Empties the histogram
+         */
+        void reset();
+    }
+
+    /**
+     * Turns the metrics on, registers a bean for every histogram with the platform MBean server and, if a period
+     * is given, prints every histogram that has something in it after each period
+     * @param seconds The time between prints, 0 to never print them
+     */
+    public static synchronized void enable(int seconds) {
+        if (latencies == null) {
+            latencies = new Latency[Type.values().length][Stage.values().length];
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            for (Type type : Type.values()) {
+                for (Stage stage : Stage.values()) {
+                    Latency latency = new Latency();
+                    latencies[type.ordinal()][stage.ordinal()] = latency;
+                    try {
+                        server.registerMBean(new StandardMBean(latency, LatencyMBean.class), new ObjectName(
+                                "InvertedIndex:type=QueryLatency,query=" + type + ",stage=" + stage));
+                    } catch (JMException e) {
+                        System.out.println("Query latency of " + type + " " + stage + " is not shown through JMX: "
+                                + e.getMessage());
+                    }
+                }
+            }
+        }
+        if (seconds > 0 && dumper == null) {
+            dumper = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "Query metrics");
+                t.setDaemon(true);
+                return t;
+            });
+            dumper.scheduleAtFixedRate(() -> System.out.print(report()), seconds, seconds, TimeUnit.SECONDS);
+        }
+        enabled = true;
+    }
+
+    /**
+     * @return True if the metrics have been turned on
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Starts timing a search on this thread
+     * @return The times of the stages of the search, null if the metrics are off
+     */
+    static Trace begin() {
+        if (!enabled)
+            return null;
+        Trace trace = new Trace();
+        TRACE.set(trace);
+        return trace;
+    }
+
+    /**
+     * Stops timing a search and records the time it spent in each stage it went through
+     * @param trace The times of the stages, from begin
+     * @param type The type of the search
+     */
+    static void end(Trace trace, Type type) {
+        if (trace == null)
+            return;
+        TRACE.remove();
+        Latency[] stages = latencies[type.ordinal()];
+        int used = trace.used.get();
+        for (Stage stage : Stage.values()) {
+            if ((used & 1 << stage.ordinal()) != 0)
+                stages[stage.ordinal()].record(trace.nanos.get(stage.ordinal()));
+        }
+        stages[Stage.TOTAL.ordinal()].record(System.nanoTime() - trace.start);
+    }
+
+    /**
+     * Starts timing a stage. The clock is only read while a search is being timed on this thread.
+     * @return The time the stage started, 0 if it is not timed
+     */
+    static long start() {
+        return enabled && TRACE.get() != null ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Adds the time since a stage started to the search being timed on this thread
+     * @param stage The stage
+     * @param start The time from start, 0 if the stage is not timed
+     */
+    static void add(Stage stage, long start) {
+        if (start == 0)
+            return;
+        Trace trace = TRACE.get();
+        if (trace != null)
+            trace.add(stage, System.nanoTime() - start);
+    }
+
+    /**
+     * @return The search being timed on this thread, null if there is none
+     */
+    static Trace current() {
+        return enabled ? TRACE.get() : null;
+    }
+
+    /**
+     * Does part of a search on another thread, adding the stages it goes through to the search's times
+     * @param trace The times of the search, null if it is not timed
+     * @param work The part of the search
+     * @return The result of the work
+     */
+    static <T> T within(Trace trace, Supplier<T> work) {
+        if (trace == null)
+            return work.get();
+        TRACE.set(trace);
+        try {
+            return work.get();
+        } finally {
+            TRACE.remove();
+        }
+    }
+
+    /**
+     * @return One line for each type of search and stage that has been recorded, empty if nothing has been
+     */
+    public static synchronized String report() {
+        if (latencies == null)
+            return "";
+        StringBuilder out = new StringBuilder();
+        for (Type type : Type.values()) {
+            for (Stage stage : Stage.values()) {
+                Latency latency = latencies[type.ordinal()][stage.ordinal()];
+                if (latency.getCount() == 0)
+                    continue;
+                out.append(String.format(Locale.ROOT, "%-28s %8d %10.1f %10.1f %10.1f %10.1f %10.1f%n",
+                        type + " " + stage, latency.getCount(), latency.getMean(), latency.getP50(),
+                        latency.getP99(), latency.getP999(), latency.getMax()));
+            }
+        }
+        if (out.length() == 0)
+            return "";
+        return String.format(Locale.ROOT, "%-28s %8s %10s %10s %10s %10s %10s%n", "Query latency (microseconds)",
+                "count", "mean", "p50", "p99", "p999", "max") + out;
+    }
+
+    /**
+     * The time a search has spent in each stage so far. The parts of a search that run on other threads add to
+     * it at the same time.
+     */
+    static class Trace {
+        private long start = System.nanoTime();
+        private AtomicLongArray nanos = new AtomicLongArray(Stage.values().length);
+        private AtomicInteger used = new AtomicInteger();
+
+        /**
+         * @param stage The stage
+         * @param time The time spent in it in nanoseconds
+         */
+        private void add(Stage stage, long time) {
+            nanos.addAndGet(stage.ordinal(), time);
+            int bit = 1 << stage.ordinal();
+            if ((used.get() & bit) == 0)
+                used.accumulateAndGet(bit, (a, b) -> a | b);
+        }
+    }
+
+    /**
+     * A histogram of times in nanoseconds, with buckets whose width grows with the time so every bucket is
+     * within about 3% of the times in it. Times below 64 nanoseconds each have their own bucket, and each
+     * doubling after that is split into 32 buckets, so a time is put in its bucket with a shift and no search.
+     * Recording only adds to counters, so searches on different threads can record at the same time.
+     */
+    static class Latency implements LatencyMBean {
+        private static final int SUB_BITS = 5;
+        private static final int SUB = 1 << SUB_BITS;
+        //Times are kept up to 2^40 nanoseconds, about 18 minutes, and longer times go in the last bucket
+        private static final int MAGNITUDES = 40;
+        private static final long LARGEST = (1L << MAGNITUDES) - 1;
+
+        private AtomicLongArray counts = new AtomicLongArray(index(LARGEST) + 1);
+        private LongAdder total = new LongAdder();
+        private LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        /**
+         * @param nanos A time in nanoseconds
+         */
+        void record(long nanos) {
+            long time = Math.max(0, Math.min(nanos, LARGEST));
+            counts.incrementAndGet(index(time));
+            total.add(time);
+            max.accumulate(time);
+        }
+
+        /**
+         * @param time A time in nanoseconds, at least 0 and at most LARGEST
+         * @return The bucket of the time
+         */
+        static int index(long time) {
+            if (time < 2 * SUB)
+                return (int) time;
+            //The top SUB_BITS + 1 bits of the time pick the bucket within its doubling
+            int shift = 63 - Long.numberOfLeadingZeros(time) - SUB_BITS;
+            return shift * SUB + (int) (time >>> shift);
+        }
+
+        /**
+         * @param index A bucket
+         * @return The largest time that goes in the bucket
+         */
+        static long highest(int index) {
+            if (index < 2 * SUB)
+                return index;
+            int shift = index / SUB - 1;
+            long top = index % SUB + SUB;
+            return ((top + 1) << shift) - 1;
+        }
+
+        /**
+         * @param percentile The percentile, from 0 to 100
+         * @return The time at the percentile in microseconds, which is the largest time of its bucket
+         */
+        private double percentile(double percentile) {
+            long count = 0;
+            for (int i = 0; i < counts.length(); i++)
+                count += counts.get(i);
+            if (count == 0)
+                return 0;
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length(); i++) {
+                seen += counts.get(i);
+                if (seen >= rank)
+                    return Math.min(highest(i), max.get()) / 1000.0;
+            }
+            return max.get() / 1000.0;
+        }
+
+        @Override
+        public long getCount() {
+            long count = 0;
+            for (int i = 0; i < counts.length(); i++)
+                count += counts.get(i);
+            return count;
+        }
+
+        @Override
+        public double getMean() {
+            long count = getCount();
+            return count == 0 ? 0 : total.sum() / 1000.0 / count;
+        }
+
+        @Override
+        public double getP50() {
+            return percentile(50);
+        }
+
+        @Override
+        public double getP99() {
+            return percentile(99);
+        }
+
+        @Override
+        public double getP999() {
+            return percentile(99.9);
+        }
+
+        @Override
+        public double getMax() {
+            return max.get() / 1000.0;
+        }
+
+        @Override
+        public void reset() {
+            for (int i = 0; i < counts.length(); i++)
+                counts.set(i, 0);
+            total.reset();
+            max.reset();
+        }
+    }
+}
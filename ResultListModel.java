@@ -0,0 +1,187 @@
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.swing.AbstractListModel;
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
+
+/**
+ * List model for the gui that is filled in from the search results as they are made. The hits are taken from the
+ * iterator by a background worker one batch at a time, and the next batch is only taken when the list is
+ * scrolled near the end of the hits it has, so the model never holds more hits than have been scrolled to. The
+ * snippets for a row are only read from its document when the row is first shown. Until then the row shows a
+ * placeholder.
+ *
+ */
+
+public class ResultListModel extends AbstractListModel<Object> {
+    private static final long serialVersionUID = 1L;
+    private static final int BATCH = 256;
+    private static final int CACHE = 1024;
+    private static final String LOADING = "Loading snippet...";
+    private static final ExecutorService SNIPPETS = Executors.newFixedThreadPool(2, r -> {
+        Thread t = new Thread(r, "Snippet loader");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * Formats a hit and its snippets as a row of the list
+     */
+    public interface Format {
+        /**
+         * @param hit The hit for the row
+         * @param snippets The snippets read from the document of the hit
+         * @return The row to be displayed
+         */
+        String row(SearchResult hit, String[] snippets);
+    }
+
+    private Format format;
+    private int length;
+    private Iterator<SearchResult> results;
+    private boolean fetching;
+    private boolean finished;
+    private List<SearchResult> hits;
+    private Map<Integer, String> rows;
+    private Set<Integer> loading;
+
+    /**
+     * Constructor that starts taking the first batch of hits from the iterator in the background
+     * @param results The hits that will fill the list
+     * @param format How each row is formatted
+     * @param length The size of the snippets
+     */
+    public ResultListModel(Iterator<SearchResult> results, Format format, int length) {
+        this.format = format;
+        this.length = length;
+        this.results = results;
+        hits = new ArrayList<>();
+        loading = new HashSet<>();
+        //Only the most recently shown rows are kept, the rest are reloaded if they are scrolled back to
+        rows = new LinkedHashMap<Integer, String>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, String> eldest) {
+                return size() > CACHE;
+            }
+        };
+
+        //The first hit is taken straight away so the list can be sized from it
+        if (results.hasNext())
+            hits.add(results.next());
+        fetch();
+    }
+
+    /**
+     * Takes the next batch of hits from the iterator in the background and adds them to the end of the list,
+     * unless a batch is already being taken or the iterator has run out. Only one batch is taken at a time, so
+     * the iterator is never read by two threads at once.
+     */
+    private void fetch() {
+        if (fetching || finished)
+            return;
+        fetching = true;
+        new SwingWorker<List<SearchResult>, Void>() {
+            @Override
+            protected List<SearchResult> doInBackground() {
+                List<SearchResult> batch = new ArrayList<>(BATCH);
+                while (batch.size() < BATCH && results.hasNext())
+                    batch.add(results.next());
+                return batch;
+            }
+
+            @Override
+            protected void done() {
+                fetching = false;
+                List<SearchResult> batch;
+                try {
+                    batch = get();
+                } catch (InterruptedException e) {
+                    finished = true;
+                    return;
+                } catch (ExecutionException e) {
+                    finished = true;
+                    return;
+                }
+                finished = batch.size() < BATCH;
+                int first = hits.size();
+                hits.addAll(batch);
+                if (hits.size() > first)
+                    fireIntervalAdded(ResultListModel.this, first, hits.size() - 1);
+            }
+        }.execute();
+    }
+
+    @Override
+    public int getSize() {
+        return hits.size();
+    }
+
+    /**
+     * Returns the row if its snippets have been read, otherwise starts reading them in the background and returns
+     * a placeholder. A row within half a batch of the end of the list also starts taking the next batch of hits.
+     * @param index The position of the row in the list
+     * @return The row to be displayed
+     */
+    @Override
+    public Object getElementAt(int index) {
+        if (index >= hits.size() - BATCH / 2)
+            fetch();
+        String row = rows.get(index);
+        if (row != null)
+            return row;
+
+        SearchResult hit = hits.get(index);
+        if (loading.add(index)) {
+            SNIPPETS.execute(() -> {
+                String[] snippets = new String[1];
+                try {
+                    snippets[0] = hit.getWindowSnippet(length);
+                } catch (FileNotFoundException e) {
+                    snippets[0] = "";
+                }
+                String loaded = format.row(hit, snippets);
+                SwingUtilities.invokeLater(() -> {
+                    loading.remove(index);
+                    rows.put(index, loaded);
+                    fireContentsChanged(this, index, index);
+                });
+            });
+        }
+        return placeholder(hit, LOADING);
+    }
+
+    /**
+     * Makes a row with the same layout as the loaded rows, used by the list to size every row without reading
+     * any snippets
+     * @return A row as wide as a full snippet, or null if there are no hits yet
+     */
+    public Object getPrototype() {
+        if (hits.isEmpty())
+            return null;
+        StringBuilder words = new StringBuilder();
+        for (int i = 0; i <= 2 * length; i++)
+            words.append("word ");
+        return placeholder(hits.get(0), words.toString());
+    }
+
+    /**
+     * @param hit The hit for the row
+     * @param text The text that is shown in place of the snippet
+     * @return The row with the text in place of the snippets
+     */
+    private String placeholder(SearchResult hit, String text) {
+        return format.row(hit, new String[] {text});
+    }
+}
@@ -0,0 +1,168 @@
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * The ResultWriter class writes search results to a file as they are made. Lines are passed through a bounded
+ * queue to a thread that writes them to the file channel, so the memory used stays the same however many
+ * results there are. The buffer is written out whenever the queue runs empty, so the first results can be read
+ * from the file while the rest are still being searched.
+ *
+ */
+
+public class ResultWriter {
+    private static final int CAPACITY = 256;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String END = new String();
+    private static final String NEW_LINE = System.lineSeparator();
+
+    private BlockingQueue<String> queue;
+    private FileChannel channel;
+    private ByteBuffer buffer;
+    private Thread thread;
+    private volatile boolean error;
+
+    /**
+     * Constructor that opens the output file and starts the thread that writes to it
+     * @param output The path of the file where the output will be written
+     * @throws FileNotFoundException If the path of the output file is invalid
+     */
+    public ResultWriter(String output) throws FileNotFoundException {
+        queue = new ArrayBlockingQueue<>(CAPACITY);
+        channel = new FileOutputStream(output).getChannel();
+        buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        thread = new Thread(this::drain, "ResultWriter " + output);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Writes a line to the output, waiting if the queue is full
+     * @param line The line to be written
+     */
+    public void println(String line) {
+        put(line + NEW_LINE);
+    }
+
+    /**
+     * Writes an empty line to the output
+     */
+    public void println() {
+        put(NEW_LINE);
+    }
+
+    /**
+     * @return True if the output could not be written to
+     */
+    public boolean checkError() {
+        return error;
+    }
+
+    /**
+     * Waits for every line to be written and then closes the output file
+     */
+    public void close() {
+        long start = QueryMetrics.start();
+        boolean interrupted = false;
+        while (true) {
+            try {
+                queue.put(END);
+                thread.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            error = true;
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+        QueryMetrics.add(QueryMetrics.Stage.OUTPUT, start);
+    }
+
+    /**
+     * Adds text to the queue for the writing thread
+     * @param text The text to be written
+     */
+    private void put(String text) {
+        if (error)
+            return;
+        //The time a search waits here for the queue to have room is counted as its output
+        long start = QueryMetrics.start();
+        try {
+            queue.put(text);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            error = true;
+        }
+        QueryMetrics.add(QueryMetrics.Stage.OUTPUT, start);
+    }
+
+    /**
+     * Run by the writing thread. Takes text off the queue until the end is reached, and flushes the buffer to
+     * the file whenever there is nothing waiting. After an error the text is still taken off the queue so the
+     * searching thread is never left waiting.
+     */
+    private void drain() {
+        while (true) {
+            String text = queue.poll();
+            try {
+                if (text == null) {
+                    flush();
+                    text = queue.take();
+                }
+                if (text == END) {
+                    flush();
+                    return;
+                }
+                write(text);
+            } catch (IOException e) {
+                error = true;
+            } catch (InterruptedException e) {
+                error = true;
+            }
+        }
+    }
+
+    /**
+     * Copies the text into the buffer, writing the buffer out each time it fills
+     * @param text The text to be written
+     * @throws IOException If the file cannot be written to
+     */
+    private void write(String text) throws IOException {
+        if (error)
+            return;
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        int offset = 0;
+        while (offset < bytes.length) {
+            int n = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.put(bytes, offset, n);
+            offset += n;
+            if (!buffer.hasRemaining())
+                flush();
+        }
+    }
+
+    /**
+     * Writes everything in the buffer to the file
+     * @throws IOException If the file cannot be written to
+     */
+    private void flush() throws IOException {
+        if (error) {
+            buffer.clear();
+            return;
+        }
+        buffer.flip();
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+}
@@ -3,6 +3,12 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * SearchIndex takes in the command line flags and parses them to see what the 
@@ -23,8 +29,15 @@ public class SearchIndex {
         int i = 0;
         int length = 5;
         int graphic = 0;
+        int offset = 0;
+        int limit = Integer.MAX_VALUE;
+        int expansions = InvertedIndex.EXPANSIONS;
         String flag;
         String dir = "./Corpus";
+        Map<String, String> collections = new LinkedHashMap<>();
+        String include = null;
+        String exclude = null;
+        long maxSize = Long.MAX_VALUE;
         String search = "";
         String output = "./output.txt";
         String print = "";
@@ -38,6 +51,17 @@ public class SearchIndex {
         boolean printWord = false;
         boolean stemmed = false;
         boolean fileInput = false;
+        boolean offHeap = false;
+        boolean suggest = false;
+        boolean infix = false;
+        boolean dedup = false;
+        boolean skipCopies = false;
+        Set<String> infixCollections = new LinkedHashSet<>();
+        List<String> deletes = new ArrayList<>();
+        List<String> updates = new ArrayList<>();
+        boolean compact = false;
+        boolean metrics = false;
+        int dumpSeconds = 0;
         
         //While loop for parsing the command line
         while (i < args.length && args[i].startsWith("-")) {
@@ -47,6 +71,23 @@ public class SearchIndex {
                 help = true;
             } else if (flag.equals("-s")) {
                 stemmed = true;
+            } else if (flag.equals("-offHeap")) {
+                offHeap = true;
+            } else if (flag.equals("-suggest")) {
+                suggest = true;
+            } else if (flag.equals("-infix")) {
+                infix = true;
+            } else if (flag.equals("-compact")) {
+                compact = true;
+            } else if (flag.equals("-metrics")) {
+                metrics = true;
+            } else if (flag.equals("-foldAccents")) {
+                Analyzer.Normalize.setFoldAccents(true);
+            } else if (flag.equals("-dedup")) {
+                dedup = true;
+            } else if (flag.equals("-skipDuplicates")) {
+                dedup = true;
+                skipCopies = true;
             } else {
                 int equalIndex = flag.indexOf('=');
                 if (equalIndex < 0) {
@@ -74,6 +115,55 @@ public class SearchIndex {
                     search = args[i++];
                 } else if (flag.substring(0, equalIndex).equals("-dir")) {
                     dir = flag.substring(equalIndex+1);
+                } else if (flag.substring(0, equalIndex).equals("-include")) {
+                    include = flag.substring(equalIndex+1);
+                } else if (flag.substring(0, equalIndex).equals("-exclude")) {
+                    exclude = flag.substring(equalIndex+1);
+                } else if (flag.substring(0, equalIndex).equals("-maxSize")) {
+                    String size = flag.substring(equalIndex+1);
+                    try {
+                        maxSize = Long.parseLong(size);
+                        if (maxSize < 0) {
+                            error = true;
+                            break;
+                        }
+                    } catch (NumberFormatException e) {
+                        error = true;
+                        break;
+                    }
+                } else if (flag.substring(0, equalIndex).equals("-collection")) {
+                    //Each collection is given as name=CorpusDirectory
+                    String collection = flag.substring(equalIndex+1);
+                    int nameIndex = collection.indexOf('=');
+                    if (nameIndex <= 0 || nameIndex == collection.length()-1) {
+                        error = true;
+                        break;
+                    }
+                    collections.put(collection.substring(0, nameIndex), collection.substring(nameIndex+1));
+                } else if (flag.substring(0, equalIndex).equals("-infix")) {
+                    //The infix index can be turned on for only some of the collections
+                    for (String collection : flag.substring(equalIndex+1).split(",")) {
+                        if (!collection.equals(""))
+                            infixCollections.add(collection);
+                    }
+                } else if (flag.substring(0, equalIndex).equals("-delete")) {
+                    deletes.add(flag.substring(equalIndex+1));
+                } else if (flag.substring(0, equalIndex).equals("-update")) {
+                    updates.add(flag.substring(equalIndex+1));
+                } else if (flag.substring(0, equalIndex).equals("-metrics")) {
+                    //The histograms are printed every so many seconds as well as at the end
+                    String seconds = flag.substring(equalIndex+1);
+                    try {
+                        dumpSeconds = Integer.parseInt(seconds);
+                        metrics = true;
+                        if (dumpSeconds < 0) {
+                            error = true;
+                            break;
+                        }
+                    } catch (NumberFormatException e) {
+                        error = true;
+                        break;
+                    }
                 } else if (flag.substring(0, equalIndex).equals("-output")) {
                     output = flag.substring(equalIndex+1);
                 } else if (flag.substring(0, equalIndex).equals("-PRINT_INDEX")) {
@@ -101,6 +191,42 @@ public class SearchIndex {
                         error = true;
                         break;
                     }
+                } else if (flag.substring(0, equalIndex).equals("-offset")) {
+                    String o = flag.substring(equalIndex+1);
+                    try {
+                        offset = Integer.parseInt(o);
+                        if (offset < 0) {
+                            error = true;
+                            break;
+                        }
+                    } catch (NumberFormatException e) {
+                        error = true;
+                        break;
+                    }
+                } else if (flag.substring(0, equalIndex).equals("-limit")) {
+                    String l = flag.substring(equalIndex+1);
+                    try {
+                        limit = Integer.parseInt(l);
+                        if (limit < 0) {
+                            error = true;
+                            break;
+                        }
+                    } catch (NumberFormatException e) {
+                        error = true;
+                        break;
+                    }
+                } else if (flag.substring(0, equalIndex).equals("-expand")) {
+                    String expand = flag.substring(equalIndex+1);
+                    try {
+                        expansions = Integer.parseInt(expand);
+                        if (expansions < 0) {
+                            error = true;
+                            break;
+                        }
+                    } catch (NumberFormatException e) {
+                        error = true;
+                        break;
+                    }
                 } else if (flag.substring(0, equalIndex).equals("-graphic")) {
                     String g = flag.substring(equalIndex+1);
                     try {
@@ -127,14 +253,84 @@ public class SearchIndex {
                 || hasPrint && (print.equals("") || print.startsWith("-"))) {
             System.out.println("Usage: SearchIndex [-SEARCH=(WORD word|DOC \"doc name\"|WORDS \"query string\""
                     + "|FILE \"input file name containing multiple queries\")]"
-                    + " [-dir=CorpusDirectory] [-output=OutputFile] [-h] [-len=(Number)] "
+                    + " [-dir=CorpusDirectory] [-collection=name=CorpusDirectory ...] [-output=OutputFile] [-h] "
+                    + "[-len=(Number)] [-include=GlobPattern] [-exclude=GlobPattern] [-maxSize=(Number of bytes)] "
                     + "[-PRINT_INDEX=(WORD word|DOC \"doc name\")] [-s] [-printOutput=PrintOutputFile] "
-                    + "[-graphic=(0|1|2) /*0=file output, 1=graphical output, 2=both outputs*/]");
+                    + "[-graphic=(0|1|2) /*0=file output, 1=graphical output, 2=both outputs*/] "
+                    + "[-offset=(Number) /*results to skip*/] [-limit=(Number) /*results per page*/] "
+                    + "[-offHeap /*keeps the index outside of the java heap*/] "
+                    + "[-expand=(Number) /*most words a term with * or ? is expanded to*/] "
+                    + "[-suggest /*suggests a spelling when a search finds nothing*/] "
+                    + "[-infix[=name,name...] /*makes the infix index ahead of time and reports on it*/] "
+                    + "[-dedup /*shows one document of each cluster of near duplicates*/] "
+                    + "[-skipDuplicates /*also leaves exact duplicates out of the index*/] "
+                    + "[-foldAccents /*searches letters with accents as the same letters without them*/] "
+                    + "[-delete=\"doc name\" ... /*takes a document out of the index*/] "
+                    + "[-update=\"doc name\" ... /*reads a changed document again*/] "
+                    + "[-compact /*takes the words of deleted documents out of the stored index*/] "
+                    + "[-metrics[=(Number of seconds)] /*times each stage of the searches, printed at the end "
+                    + "and every so many seconds, and shown through JMX*/]");
             if (error || hasSearch && (search.equals("") || search.startsWith("-")) 
                     || hasPrint && (print.equals("") || print.startsWith("-"))) return;
         }
         
-        InvertedIndex index = new InvertedIndex(dir);
+        //The searches are only timed if the metrics are asked for
+        if (metrics)
+            QueryMetrics.enable(dumpSeconds);
+        
+        //Multiple collections are searched together, otherwise the single directory is searched
+        Searcher index;
+        if (collections.isEmpty()) {
+            index = new InvertedIndex(null, new CorpusWalker(dir, include, exclude, maxSize), offHeap, dedup,
+                    skipCopies);
+        } else {
+            Map<String, CorpusWalker> walkers = new LinkedHashMap<>();
+            for (Map.Entry<String, String> collection : collections.entrySet()) {
+                walkers.put(collection.getKey(), new CorpusWalker(collection.getValue(), include, exclude, maxSize));
+            }
+            index = new FederatedIndex(walkers, offHeap, dedup, skipCopies);
+        }
+        index.setExpansions(expansions);
+        index.setSuggestions(suggest);
+        if (infix)
+            index.setInfix(true);
+        for (String collection : infixCollections) {
+            if (!(index instanceof FederatedIndex) || !((FederatedIndex) index).setInfix(collection, true))
+                System.out.println("There is no collection named " + collection);
+        }
+        
+        //Documents are deleted and updated before any search, and the index is compacted after them. The
+        //deletions are written to storage once, after the last of them.
+        for (String doc : deletes) {
+            if (!index.delete(doc))
+                System.out.println("Document " + doc + " not found in the Inverted Index");
+        }
+        index.flush();
+        for (String doc : updates) {
+            if (!index.update(doc))
+                System.out.println("Document " + doc + " not found in the Inverted Index");
+        }
+        if (compact)
+            System.out.println("Compacted: " + index.compact() + " deleted documents taken out");
+        
+        //The size of each infix index made ahead of time is reported, the time taken to expand each term with
+        //wildcards is a stage of the metrics. The copies found are reported when they are looked for, and so are
+        //the documents that could only be read in part.
+        if (index instanceof InvertedIndex) {
+            printPartlyRead((InvertedIndex) index);
+            if (infix)
+                printInfix(null, (InvertedIndex) index);
+            if (dedup)
+                printCopies(null, (InvertedIndex) index);
+        } else {
+            for (Map.Entry<String, InvertedIndex> collection : ((FederatedIndex) index).getCollections().entrySet()) {
+                printPartlyRead(collection.getValue());
+                if (infix || infixCollections.contains(collection.getKey()))
+                    printInfix(collection.getKey(), collection.getValue());
+                if (dedup)
+                    printCopies(collection.getKey(), collection.getValue());
+            }
+        }
         
         //Search for word or doc in the Inverted Index
         if(hasSearch) {
@@ -152,9 +348,11 @@ public class SearchIndex {
                             String[] words = line.split(" ");
                             //Uses the inputed output name for each output file and numbers them
                             if (words.length > 1) {
-                                index.searchWords(line, fileName + "(" + outputNum + ").txt", length, graphic);
+                                index.searchWords(line, fileName + "(" + outputNum + ").txt", length, graphic,
+                                        offset, limit);
                             } else if (words.length == 1) {
-                                index.searchWord(line, fileName + "(" + outputNum + ").txt", length, graphic);
+                                index.searchWord(line, fileName + "(" + outputNum + ").txt", length, graphic,
+                                        offset, limit);
                             }
                             outputNum ++;
                         }
@@ -167,21 +365,21 @@ public class SearchIndex {
                     }
                 } else if (isWord) {
                     try {
-                        index.searchWord(search, output, length, graphic);
+                        index.searchWord(search, output, length, graphic, offset, limit);
                     } catch (FileNotFoundException e) {
                         // TODO Auto-generated catch block
                             e.printStackTrace();
                         }
                 } else if (!isWord && !isWords){
                     try {
-                        index.searchDoc(search, output);
+                        index.searchDoc(search, output, offset, limit);
                     } catch (FileNotFoundException e) {
                         // TODO Auto-generated catch block
                         e.printStackTrace();
                     }
                 } else if (isWords) { //If WORDS is selected, search for multiple words in the corpus
                     try {
-                        index.searchWords(search, output, length, graphic);
+                        index.searchWords(search, output, length, graphic, offset, limit);
                     } catch (FileNotFoundException e) {
                         // TODO Auto-generated catch block
                         e.printStackTrace();
@@ -201,9 +399,11 @@ public class SearchIndex {
                             String[] words = line.split(" ");
                             //Uses the inputed output name for each output file and numbers them
                             if (words.length > 1) {
-                                index.searchWordsStemmed(line, fileName + "(" + outputNum + ").txt", length, graphic);
+                                index.searchWordsStemmed(line, fileName + "(" + outputNum + ").txt", length, graphic,
+                                        offset, limit);
                             } else if (words.length == 1) {
-                                index.searchWordStemmed(line, fileName + "(" + outputNum + ").txt", length, graphic);
+                                index.searchWordStemmed(line, fileName + "(" + outputNum + ").txt", length, graphic,
+                                        offset, limit);
                             }
                             outputNum ++;
                         }
@@ -216,19 +416,19 @@ public class SearchIndex {
                     }
                 } else if (isWord) {
                     try {
-                        index.searchWordStemmed(search, output, length, graphic);
+                        index.searchWordStemmed(search, output, length, graphic, offset, limit);
                     } catch(FileNotFoundException e) {
                         e.printStackTrace();
                     }
                 } else if(!isWord && !isWords) {
                     try {
-                        index.searchDoc(search, output);
+                        index.searchDoc(search, output, offset, limit);
                     } catch (FileNotFoundException e) {
                         e.printStackTrace();
                     }
                 } else if (isWords) {
                     try {
-                        index.searchWordsStemmed(search, output, length, graphic);
+                        index.searchWordsStemmed(search, output, length, graphic, offset, limit);
                     } catch (FileNotFoundException e) {
                         // TODO Auto-generated catch block
                         e.printStackTrace();
@@ -239,22 +439,66 @@ public class SearchIndex {
         
         //Print word or doc from the Inverted Index
         if(hasPrint) {
-            if (printWord) {
+            if (!(index instanceof InvertedIndex)) {
+                System.out.println("The index can only be printed for a single directory");
+            } else if (printWord) {
                 try {
-                    index.printWord(print, printOutput);
+                    ((InvertedIndex) index).printWord(print, printOutput);
                 } catch (FileNotFoundException e) {
                     // TODO Auto-generated catch block
                     e.printStackTrace();
                 }
             } else {
                 try {
-                    index.printDoc(print, printOutput);
+                    ((InvertedIndex) index).printDoc(print, printOutput);
                 } catch (FileNotFoundException e) {
                     // TODO Auto-generated catch block
                     e.printStackTrace();
                 }
             }
         }
+        
+        if (metrics)
+            System.out.print(QueryMetrics.report());
+        
+        //The gui keeps reading the index after main returns, so its memory is only freed for file output
+        if (graphic == 0)
+            index.close();
+    }
+
+    /**
+     * Prints how big the infix index of a collection is next to its word index, and how long it took to make
+     * @param name The name of the collection, null for a single directory
+     * @param index The index of the collection
+     */
+    private static void printInfix(String name, InvertedIndex index) {
+        WildcardIndex wildcards = index.getInfixIndex();
+        long locations = index.getLocations();
+        long percent = locations == 0 ? 0 : 100 * wildcards.ids() / locations;
+        System.out.println("Infix index" + (name == null ? "" : " of " + name) + ": " + wildcards.size()
+                + " groups of letters, " + wildcards.ids() + " word ids (" + percent + "% of the " + locations
+                + " locations in the word index), about " + wildcards.bytes() / 1024 + " KB, made in "
+                + wildcards.millis() + " ms");
+    }
+
+    /**
+     * Prints the documents that stopped being readable part way through while they were indexed
+     * @param index The index of a collection
+     */
+    private static void printPartlyRead(InvertedIndex index) {
+        index.getPartlyRead().forEach((doc, reason) ->
+            System.out.println(doc + " could only be read in part: " + reason));
+    }
+
+    /**
+     * Prints how many clusters of near copies were found in a collection and how many exact copies were left out
+     * @param name The name of the collection, null for a single directory
+     * @param index The index of the collection
+     */
+    private static void printCopies(String name, InvertedIndex index) {
+        Duplicates duplicates = index.getDuplicates();
+        System.out.println("Copies" + (name == null ? "" : " in " + name) + ": " + duplicates.clusters()
+                + " clusters of near copies, " + duplicates.skipped() + " exact copies left out of the index");
     }
 
     private static String extractFileName(String name) {
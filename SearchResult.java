@@ -0,0 +1,240 @@
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.Arrays;
+
+/**
+ * A single hit from a search of the inverted index. Holds the document, the number of times each query term
+ * appears in it, where they appear and a score for the document. Snippets are only read from the document when
+ * asked for.
+ *
+ */
+
+public class SearchResult {
+    private InvertedIndex index;
+    private File doc;
+    private long[] checkpoints;
+    private String[] terms;
+    private int[] counts;
+    private int[] positions;
+    private int[][] locations;
+    private double score;
+    private int copies;
+    private String collection;
+
+    /**
+     * Constructor for a hit, only made by the index when iterating over the results of a search
+     * @param index The index the hit came from, used to read snippets
+     * @param doc The document that matched the query
+     * @param checkpoints The byte offsets of every so many words in the document, taken from the snapshot the
+     * hit was found in so snippets read the same version of the document as the locations, null if it has none
+     * @param terms The query terms as they were looked up in the index
+     * @param counts The number of appearances of each term in the document
+     * @param positions The location of the first appearance of each term in the document, or of the closest
+     * pair of appearances for terms joined by a NEAR
+     * @param locations The locations of every appearance of each term in the document, in increasing order
+     * @param score The score of the document for the query
+     * @param copies The number of other documents in the document's cluster of copies
+     */
+    SearchResult(InvertedIndex index, File doc, long[] checkpoints, String[] terms, int[] counts, int[] positions,
+            int[][] locations, double score, int copies) {
+        this.index = index;
+        this.doc = doc;
+        this.checkpoints = checkpoints;
+        this.terms = terms;
+        this.counts = counts;
+        this.positions = positions;
+        this.locations = locations;
+        this.score = score;
+        this.copies = copies;
+    }
+
+    /**
+     * @return The document that matched the query
+     */
+    public File getDoc() {
+        return doc;
+    }
+
+    /**
+     * @return The name of the document that matched the query
+     */
+    public String getName() {
+        return doc.getName();
+    }
+
+    /**
+     * @return The name of the collection the document is in, null if the hit did not come from a federated search
+     */
+    public String getCollection() {
+        return collection;
+    }
+
+    /**
+     * @return The number of other documents that are copies or near copies of the document, which the search
+     * left out
+     */
+    public int getCopies() {
+        return copies;
+    }
+
+    /**
+     * @return The name of the document, tagged with its collection if it has one and with its number of copies
+     * if it has any
+     */
+    public String getLabel() {
+        String label = doc.getName();
+        if (collection != null)
+            label = "[" + collection + "] " + label;
+        if (copies > 0)
+            label += " (+" + copies + " near duplicates)";
+        return label;
+    }
+
+    /**
+     * @param collection The name of the collection the document is in
+     * @return A copy of this hit tagged with the collection
+     */
+    SearchResult inCollection(String collection) {
+        SearchResult hit = new SearchResult(index, doc, checkpoints, terms, counts, positions, locations, score,
+                copies);
+        hit.collection = collection;
+        return hit;
+    }
+
+    /**
+     * @return The query terms as they were looked up in the index
+     */
+    public String[] getTerms() {
+        return terms;
+    }
+
+    /**
+     * @return The total number of appearances of all the query terms in the document
+     */
+    public int getCount() {
+        int total = 0;
+        for (int i = 0; i < counts.length; i++)
+            total += counts[i];
+        return total;
+    }
+
+    /**
+     * @param term The position of the term in the query
+     * @return The number of appearances of the term in the document
+     */
+    public int getCount(int term) {
+        return counts[term];
+    }
+
+    /**
+     * @param term The position of the term in the query
+     * @return The location of the first appearance of the term in the document, or of its appearance in the
+     * closest pair for a term joined to another by a NEAR
+     */
+    public int getPosition(int term) {
+        return positions[term];
+    }
+
+    /**
+     * The score is the sum of tf-idf weights of the query terms, so documents with more appearances of rarer
+     * terms score higher. Terms joined by a NEAR add more the closer together they are.
+     * @return The score of the document for the query
+     */
+    public double getScore() {
+        return score;
+    }
+
+    /**
+     * Reads the snippet around the first appearance of the first query term
+     * @param length The number of words before and after the term
+     * @return String of the snippet
+     * @throws FileNotFoundException If the document can no longer be read
+     */
+    public String getSnippet(int length) throws FileNotFoundException {
+        return getSnippet(0, length);
+    }
+
+    /**
+     * Reads the snippet around the first appearance of the given query term
+     * @param term The position of the term in the query
+     * @param length The number of words before and after the term
+     * @return String of the snippet
+     * @throws FileNotFoundException If the document can no longer be read
+     */
+    public String getSnippet(int term, int length) throws FileNotFoundException {
+        return index.snippet(length, positions[term], doc, checkpoints);
+    }
+
+    /**
+     * Reads the snippet that shows the most query terms together. The window of at most 2 * length words that
+     * has the most different terms in it is found by sliding over the appearances of all the terms in order,
+     * and the smallest such window is kept. It is padded out to the size of a normal snippet and read from the
+     * document once, with every appearance of a query term in it put in brackets.
+     * @param length The number of words before and after a term in a snippet of one term
+     * @return String of the snippet
+     * @throws FileNotFoundException If the document can no longer be read
+     */
+    public String getWindowSnippet(int length) throws FileNotFoundException {
+        //Every appearance is kept as its location followed by its term, so sorting puts them in order
+        int total = 0;
+        for (int[] list : locations)
+            total += list.length;
+        long[] appearances = new long[total];
+        int n = 0;
+        for (int term = 0; term < locations.length; term++) {
+            for (int location : locations[term])
+                appearances[n++] = (long) location << 32 | term;
+        }
+        Arrays.sort(appearances);
+
+        //Moves the end of the window forward one appearance at a time, and the start forward while the window
+        //is too long or its first appearance is of a term that appears again later in it
+        int[] inside = new int[locations.length];
+        int distinct = 0;
+        int best = 0;
+        int bestStart = 0;
+        int bestEnd = 0;
+        int first = 0;
+        for (int last = 0; last < n; last++) {
+            if (inside[(int) appearances[last]]++ == 0)
+                distinct++;
+            while (location(appearances[last]) - location(appearances[first]) > 2 * length
+                    || inside[(int) appearances[first]] > 1) {
+                if (--inside[(int) appearances[first]] == 0)
+                    distinct--;
+                first++;
+            }
+            int start = location(appearances[first]);
+            int end = location(appearances[last]);
+            if (distinct > best || distinct == best && end - start < bestEnd - bestStart) {
+                best = distinct;
+                bestStart = start;
+                bestEnd = end;
+            }
+        }
+
+        int pad = 2 * length - (bestEnd - bestStart);
+        int start = bestStart - pad / 2;
+        int end = bestEnd + pad - pad / 2;
+        if (start < 0) {
+            end -= start;
+            start = 0;
+        }
+        int[] marked = new int[n];
+        int m = 0;
+        for (int i = 0; i < n; i++) {
+            int location = location(appearances[i]);
+            if (location >= start && location <= end)
+                marked[m++] = location;
+        }
+        return index.snippet(start, end, doc, checkpoints, Arrays.copyOf(marked, m));
+    }
+
+    /**
+     * @param appearance An appearance of a term, with its location in the top half
+     * @return The location of the appearance
+     */
+    private static int location(long appearance) {
+        return (int) (appearance >>> 32);
+    }
+}
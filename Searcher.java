@@ -0,0 +1,536 @@
+import java.io.FileNotFoundException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import javax.swing.DefaultListModel;
+import javax.swing.ListModel;
+
+/**
+ * The Searcher class outputs the results of searches to a file or the gui. Subclasses only have to find the
+ * results, and every type of output is made from the hits they return. Each search is timed by QueryMetrics
+ * when the metrics are on.
+ *
+ */
+
+public abstract class Searcher {
+
+    /**
+     * Searches for a single word and returns the documents it appears in, one hit per document.
+     * @param w The word to be searched for
+     * @param useStemmed Searches the stemmed index for the stem of the word if true
+     * @return Iterator over the hits, which is empty if the word is not found
+     */
+    public abstract Iterator<SearchResult> findWord(String w, boolean useStemmed);
+
+    /**
+     * Searches for each word of the query and returns the documents that contain all the words that are not
+     * stop words, one hit per document.
+     * @param query The set of words that will be searched in the corpus
+     * @param useStemmed Searches the stemmed index for the stems of the words if true
+     * @return Iterator over the hits, which is empty if any of the words are not found
+     */
+    public abstract Iterator<SearchResult> findWords(String query, boolean useStemmed);
+
+    /**
+     * Searches for the stems of the words of the query and returns the documents that the query itself does not
+     * match, one hit per document. Both searches are made as the iterator is advanced, and each hit of the
+     * stems is checked against the hits of the query as they go past, so no hits are collected first.
+     * @param query The set of words that will be searched in the corpus
+     * @return Iterator over the hits of the stems that are not hits of the query
+     */
+    public abstract Iterator<SearchResult> findSimilarWords(String query);
+
+    /**
+     * Counts how many times each word appears in the given document.
+     * @param doc The name of the document to be searched for
+     * @return Iterator over the words in the document and their counts, null if the document is not in the corpus
+     */
+    public abstract Iterator<Map.Entry<String, Integer>> findDoc(String doc);
+
+    /**
+     * Makes the stemmed index ahead of the first stemmed search
+     */
+    public abstract void makeStemmedIndex();
+
+    /**
+     * Frees the memory of an index kept outside of the heap. No search may be running or started afterwards.
+     */
+    public abstract void close();
+
+    /**
+     * Deletes a document, which searches stop finding straight away
+     * @param doc The name of the document
+     * @return False if the document is not in the index
+     */
+    public abstract boolean delete(String doc);
+
+    /**
+     * Reads a document that has changed again, so searches find its new words instead of its old ones. A
+     * deleted document is put back.
+     * @param doc The name of the document
+     * @return False if the document is not in the index and was not deleted from it
+     */
+    public abstract boolean update(String doc);
+
+    /**
+     * Writes the documents deleted since the last time to storage, so deleting many documents writes them once.
+     * Closing or compacting the index also writes them.
+     */
+    public abstract void flush();
+
+    /**
+     * Takes the words of the deleted documents out of the index
+     * @return The number of deleted documents taken out
+     */
+    public abstract int compact();
+
+    /**
+     * Sets how many words a term with wildcards can be expanded to, the words after that are left out
+     * @param limit The largest number of words a term is expanded to
+     */
+    public abstract void setExpansions(int limit);
+
+    /**
+     * Turns the infix index on or off. When it is on, the index of the groups of letters of the words is made
+     * along with the word index instead of on the first search that needs it.
+     * @param infix Makes the infix index ahead of time if true
+     */
+    public abstract void setInfix(boolean infix);
+
+    /**
+     * Turns the spelling suggestions given when a search finds nothing on or off. They are off to begin with, so
+     * nothing is made for them unless they are asked for.
+     * @param suggestions Gives suggestions if true
+     */
+    public abstract void setSuggestions(boolean suggestions);
+
+    /**
+     * @param query A word or a query string as given by the user
+     * @return The query with its misspelled words replaced, null if suggestions are off or there are none
+     */
+    public abstract String suggest(String query);
+
+    /**
+     * The word is found in the index, and then the number of occurrences in each document is counted and the
+     * results are written to the output file path
+     * @param w The word to be searched for in the index
+     * @param output The path of the file where the output will be written
+     * @param graphic Indicates what type of output is used, 0=txt file, 1=gui, 2=both
+     * @param offset The number of results to skip before the first one that is output
+     * @param limit The largest number of results that are output
+     * @throws FileNotFoundException If the path of the output file in invalid
+     */
+    public void searchWord(String w, String output, int length, int graphic, int offset, int limit)
+            throws FileNotFoundException {
+        QueryMetrics.Trace trace = QueryMetrics.begin();
+        try {
+            ResultWriter writer = new ResultWriter(output);
+            try {
+                Iterator<SearchResult> hits = findWord(w, false);
+                if (!hits.hasNext()) {
+                    writer.println("No results found for " + w);
+                    writeSuggestion(writer, w);
+                } else if (graphic == 0 || graphic == 2) {
+                    writer.println("Search Results for the word: " + w);
+                    writeCounts(writer, hits, length, offset, limit);
+                }
+            } finally {
+                writer.close();
+            }
+
+            //display on gui
+            if (graphic == 1 || graphic == 2) {
+                displayWord(InvertedIndex.normalize(w), page(findWord(w, false), offset, limit), length);
+            }
+        } finally {
+            QueryMetrics.end(trace, QueryMetrics.Type.WORD);
+        }
+    }
+
+    /**
+     * The search for the original word stays the same. If the stemmed word is different, then another search
+     * is made to the stemmed index to get more results that may be relevant to the query.
+     * @param word The word to be searched for and stemmed
+     * @param output The path of the file where the output will be written
+     * @param graphic Indicates what type of output is used, 0=txt file, 1=gui, 2=both
+     * @param offset The number of results to skip before the first one that is output
+     * @param limit The largest number of results that are output
+     * @throws FileNotFoundException If the path of the output file is invalid
+     */
+    public void searchWordStemmed(String w, String output, int length, int graphic, int offset, int limit)
+            throws FileNotFoundException {
+        QueryMetrics.Trace trace = QueryMetrics.begin();
+        try {
+            String word = InvertedIndex.normalize(w);
+            String stemmedWord = InvertedIndex.stem(word);
+            ResultWriter writer = new ResultWriter(output);
+            try {
+                if (graphic == 0 || graphic ==2) {
+                    Iterator<SearchResult> hits = findWord(w, false);
+                    if(!hits.hasNext()) {
+                        writer.println("No results found for " + w);
+                        writeSuggestion(writer, w);
+                    } else {
+                        writer.println("Search Results for the word: " + w);
+                        writeCounts(writer, hits, length, offset, limit);
+                    }
+
+                    //If the stemmed word is different get the search from the stemmed index
+                    if (!stemmedWord.equals(word)) {
+                        Iterator<SearchResult> stemHits = findWord(w, true);
+                        writer.println();
+                        if(!stemHits.hasNext()) {
+                            writer.println("No result found for " + stemmedWord);
+                        } else {
+                            writer.println("Search Results for similar word: " + stemmedWord);
+                            writeCounts(writer, stemHits, length, offset, limit);
+                        }
+                    }
+                }
+            } finally {
+                writer.close();
+            }
+
+            //display on gui
+            if (graphic == 1 || graphic == 2) {
+                if (stemmedWord.equals(word))
+                    displayWord(word, page(findWord(w, false), offset, limit), length);
+                else
+                    displayWordStemmed(word, stemmedWord, page(findWord(w, false), offset, limit),
+                            page(findWord(w, true), offset, limit), length);
+            }
+        } finally {
+            QueryMetrics.end(trace, QueryMetrics.Type.WORD_STEMMED);
+        }
+    }
+
+    /**
+     * Writes one page of the hits of a single word search with their number of appearances and a snippet
+     * @param writer Where the hits are written to
+     * @param hits The hits that will be written
+     * @param length The number of words before and after the word in the snippet
+     * @param offset The number of hits to skip before the first one that is written
+     * @param limit The largest number of hits that are written
+     */
+    private void writeCounts(ResultWriter writer, Iterator<SearchResult> hits, int length, int offset, int limit) {
+        Iterator<SearchResult> page = page(hits, offset, limit);
+        while (page.hasNext()) {
+            SearchResult hit = page.next();
+            writer.println(hit.getLabel() + ": " + hit.getCount());
+            //Add snippet
+            try {
+                writer.println("\t\"..." + hit.getSnippet(length) + "...\"");
+            } catch (FileNotFoundException e) {
+                writer.println();
+            }
+        }
+        writeNextPage(writer, hits, offset, limit);
+    }
+
+    /**
+     * Searches the entire index for occurrences of the given document, and outputs which words have the
+     * document in their list, and how many times the word appears in the document.
+     * @param doc The name of the document to be search for in the index
+     * @param output The path of the file where the results will be output to
+     * @param offset The number of words to skip before the first one that is output
+     * @param limit The largest number of words that are output
+     * @throws FileNotFoundException If the output path is invalid
+     */
+    public void searchDoc(String doc, String output, int offset, int limit) throws FileNotFoundException {
+        QueryMetrics.Trace trace = QueryMetrics.begin();
+        try {
+            ResultWriter writer = new ResultWriter(output);
+            try {
+                Iterator<Map.Entry<String, Integer>> words = findDoc(doc);
+                if (words == null) {
+                    writer.println("No results found for the document: " + doc);
+                    return;
+                }
+
+                writer.println("Search Results for the document: " + doc);
+                Iterator<Map.Entry<String, Integer>> page = page(words, offset, limit);
+                while (page.hasNext()) {
+                    Map.Entry<String, Integer> e = page.next();
+                    writer.println(e.getKey() + ": " + e.getValue());
+                }
+                writeNextPage(writer, words, offset, limit);
+            } finally {
+                writer.close();
+            }
+        } finally {
+            QueryMetrics.end(trace, QueryMetrics.Type.DOC);
+        }
+    }
+
+    /**
+     * Searches for each word of the query and returns the documents that contain all the words that
+     * are not stop words.
+     * @param query The set of words that will be searched in the corpus
+     * @param output The path of the output file
+     * @param graphic Indicates what type of output is used, 0=txt file, 1=gui, 2=both
+     * @param offset The number of results to skip before the first one that is output
+     * @param limit The largest number of results that are output
+     * @throws FileNotFoundException If the output path is invalid
+     */
+    public void searchWords(String query, String output, int length, int graphic, int offset, int limit)
+            throws FileNotFoundException {
+        QueryMetrics.Trace trace = QueryMetrics.begin();
+        try {
+            ResultWriter writer = new ResultWriter(output);
+            try {
+                if (graphic == 0 || graphic == 2) {
+                    Iterator<SearchResult> hits = findWords(query, false);
+                    if (!hits.hasNext()) {
+                        writer.println("No results found for: " + query);
+                        writeSuggestion(writer, query);
+                    } else {
+                        writer.println("Search Results for: " + query);
+                        writeSnippets(writer, hits, length, offset, limit);
+                    }
+                }
+            } finally {
+                writer.close();
+            }
+
+            if (graphic == 1 || graphic == 2) {
+               //Display to gui
+                displayWords(query, page(findWords(query, false), offset, limit), length);
+            }
+        } finally {
+            QueryMetrics.end(trace, QueryMetrics.Type.WORDS);
+        }
+    }
+
+    /**
+     * Searches each word of the query and prints the set of documents that contain all the words that are not
+     * stop words, and then does the same but for the stemmed words, printing any documents that may not have
+     * appeared in the previous search
+     * @param query The set of words that will be searched in the corpus
+     * @param output The path of the output file
+     * @param graphic Indicates what type of output is used, 0=txt file, 1=gui, 2=both
+     * @param offset The number of results to skip before the first one that is output
+     * @param limit The largest number of results that are output
+     * @throws FileNotFoundException If the output path is invalid
+     */
+    public void searchWordsStemmed (String query, String output, int length, int graphic, int offset, int limit)
+            throws FileNotFoundException {
+        QueryMetrics.Trace trace = QueryMetrics.begin();
+        try {
+            ResultWriter writer = new ResultWriter(output);
+            try {
+                if (graphic == 0 || graphic == 2) {
+                    //Print the unstemmed results first
+                    Iterator<SearchResult> hits = findWords(query, false);
+                    if (!hits.hasNext()) {
+                        writer.println("No results found for: " + query);
+                        writeSuggestion(writer, query);
+                    } else {
+                        writer.println("Search Results for: " + query);
+                        writeSnippets(writer, hits, length, offset, limit);
+                    }
+                    writer.println();
+
+                    //Print stemmed results next, leaving out the documents of the unstemmed results
+                    Iterator<SearchResult> stemHits = findWords(query, true);
+                    if (!stemHits.hasNext()) {
+                        writer.println("No results found for similar words either");
+                    } else {
+                        Iterator<SearchResult> otherHits = findSimilarWords(query);
+                        if (!otherHits.hasNext()) {
+                            writer.println("Searches for similar words yielded the same results");
+                        } else {
+                            writer.println("Search Results for similar words:");
+                            writeSnippets(writer, otherHits, length, offset, limit);
+                        }
+                    }
+                }
+            } finally {
+                writer.close();
+            }
+
+            //Display results to gui
+            if (graphic == 1 || graphic == 2) {
+                displayWordsStemmed(query, page(findWords(query, false), offset, limit),
+                        page(findSimilarWords(query), offset, limit), length);
+            }
+        } finally {
+            QueryMetrics.end(trace, QueryMetrics.Type.WORDS_STEMMED);
+        }
+    }
+
+    /**
+     * Writes one page of the hits of a multi word search with the snippet that shows the most query terms
+     * @param writer Where the hits are written to
+     * @param hits The hits that will be written
+     * @param length The number of words before and after a term in a snippet of one term
+     * @param offset The number of hits to skip before the first one that is written
+     * @param limit The largest number of hits that are written
+     */
+    private void writeSnippets(ResultWriter writer, Iterator<SearchResult> hits, int length, int offset, int limit) {
+        Iterator<SearchResult> page = page(hits, offset, limit);
+        while (page.hasNext()) {
+            SearchResult hit = page.next();
+            writer.println(hit.getLabel());
+            try {
+                writer.println("\t\"..." + hit.getWindowSnippet(length) + "...\"");
+            } catch (FileNotFoundException e) {
+                writer.println();
+            }
+        }
+        writeNextPage(writer, hits, offset, limit);
+    }
+
+    /**
+     * Writes the suggested spelling of a search that found nothing, if there is one
+     * @param writer Where the results were written to
+     * @param query The word or query that was searched for
+     */
+    private void writeSuggestion(ResultWriter writer, String query) {
+        String suggestion = suggest(query);
+        if (suggestion != null)
+            writer.println("Did you mean: " + suggestion);
+    }
+
+    /**
+     * If there are results after the page that was written, writes the offset where the next page starts
+     * @param writer Where the results were written to
+     * @param rest The results after the page
+     * @param offset The number of results skipped before the page
+     * @param limit The largest number of results in a page
+     */
+    private static void writeNextPage(ResultWriter writer, Iterator<?> rest, int offset, int limit) {
+        if (rest.hasNext())
+            writer.println("More results found, use -offset=" + ((long) offset + limit) + " for the next page");
+    }
+
+    /**
+     * Skips the first results and stops after the limit. Skipped hits are never given snippets, so skipping is
+     * cheap.
+     * @param results The results to be paged
+     * @param offset The number of results to skip
+     * @param limit The largest number of results to return
+     * @return Iterator over the page of results, which leaves the results after the page in the original iterator
+     */
+    public static <T> Iterator<T> page(Iterator<T> results, int offset, int limit) {
+        for (int i = 0; i < offset && results.hasNext(); i++)
+            results.next();
+
+        return new Iterator<T>() {
+            private int returned = 0;
+
+            @Override
+            public boolean hasNext() {
+                return returned < limit && results.hasNext();
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                returned++;
+                return results.next();
+            }
+        };
+    }
+
+    /**
+     * This method will display in a gui the results from searching for one word in the query
+     * @param word The word that is being searched for
+     * @param hits The files that the word appears in with the number of appearances
+     * @param length The size of the snippet
+     */
+    private void displayWord (String word, Iterator<SearchResult> hits, int length) {
+        Displayer d = new Displayer(word);
+        d.displayNonStem(rows(hits, Searcher::countRow, length, "No results found"));
+    }
+    
+    /**
+     * Displays in a gui the results from searching for one word using stemming
+     * @param word The word searched for by the user
+     * @param stemmedWord The stem of the word after going through Porter's Algorithm
+     * @param hits The files where the word appears and the number of times it does
+     * @param stemHits The files where the stemmed word appears and the number of times it does
+     * @param length The length of the snippet as set by the user
+     */
+    private void displayWordStemmed (String word, String stemmedWord, Iterator<SearchResult> hits,
+            Iterator<SearchResult> stemHits, int length) {
+        Displayer d = new Displayer(word);
+        d.displayStem(stemmedWord, rows(hits, Searcher::countRow, length, "No results found"),
+                rows(stemHits, Searcher::countRow, length, "No results found"));
+    }
+    
+    /**
+     * Displays multi-word queries to a GUI, without stemming
+     * @param query The user inputted query
+     * @param hits The files that have all the non-stopword query terms
+     * @param length The size of the snippet as indicated by the user
+     */
+    private void displayWords(String query, Iterator<SearchResult> hits, int length) {
+        Displayer d = new Displayer(query);
+        d.displayNonStem(rows(hits, Searcher::snippetRow, length, "No results found"));
+    }
+    
+    /**
+     * Displays the results for multi word queries with stemming turned on
+     * @param query The query string inputed by the user
+     * @param hits The files returned from the search for the original query
+     * @param stemHits The files returned from the search for the stemmed query that were not already returned
+     * @param length The size of the snippet as defined by the user
+     */
+    private void displayWordsStemmed(String query, Iterator<SearchResult> hits, Iterator<SearchResult> stemHits,
+            int length) {
+        Displayer d = new Displayer(query);
+        d.displayStem("", rows(hits, Searcher::snippetRow, length, "No results found"),
+                rows(stemHits, Searcher::snippetRow, length, "Results for similar searches are the same"));
+    }
+    
+    /**
+     * Makes the list of rows for the gui. The rows are filled in as the list is scrolled, so the window can be
+     * shown before any snippets are read.
+     * @param hits The hits that will be displayed
+     * @param format How each row is formatted
+     * @param length The size of the snippet
+     * @param empty The message shown if there are no hits
+     * @return The list of rows to be displayed
+     */
+    private static ListModel<Object> rows(Iterator<SearchResult> hits, ResultListModel.Format format, int length,
+            String empty) {
+        if (!hits.hasNext()) {
+            DefaultListModel<Object> out = new DefaultListModel<>();
+            out.addElement(empty);
+            return out;
+        }
+        return new ResultListModel(hits, format, length);
+    }
+    
+    /**
+     * Formats a hit of a single word search as an html row for the gui
+     * @param hit The hit that will be formatted
+     * @param snippets The snippet around the first appearance of the word, with its appearances in brackets
+     * @return The row to be displayed
+     */
+    private static String countRow(SearchResult hit, String[] snippets) {
+        String o = "<html>" + hit.getLabel() + "<br>";
+        o += "Number of Appearances " + hit.getCount() + "<br>"; 
+        o += "First appearance: \"...<xmp>" + snippets[0] + "</xmp>...\"</html>";
+        return o;
+    }
+    
+    /**
+     * Formats a hit of a multi word search as an html row for the gui
+     * @param hit The hit that will be formatted
+     * @param snippets The snippet that shows the most query terms
+     * @return The row to be displayed
+     */
+    private static String snippetRow(SearchResult hit, String[] snippets) {
+        String o = "<html>" + hit.getLabel() + "<br>";
+        for (int j = 0; j < snippets.length; j++) {
+            o += "\"...<xmp>" + snippets[j] + "</xmp>...\"";
+            if (j < snippets.length-1)
+                o += "<br>";
+        }
+        o += "</html>";
+        return o;
+    }
+}
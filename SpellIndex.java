@@ -0,0 +1,216 @@
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The SpellIndex class suggests the word of the corpus that a misspelled word was most likely meant to be. It
+ * works by symmetric deletes: every word is kept under each string that is left after taking out up to
+ * MAX_DISTANCE of its letters, so the words close to a misspelled word are found by taking letters out of the
+ * misspelled word and looking up what is left, without comparing it to every word. Only the first PREFIX letters
+ * are used, which keeps the number of deletes of a long word small. Of the words found, the closest one is
+ * suggested, and the one in the most documents if there is a tie.
+ * The words are kept as strings rather than ids, so when the index is made again only the words that were added
+ * or taken out have to be changed.
+ *
+ */
+
+public class SpellIndex implements Serializable {
+    private static final long serialVersionUID = 1L;
+    static final int MAX_DISTANCE = 2;
+    static final int PREFIX = 7;
+
+    private long fingerprint;
+    private Map<String, Integer> counts;
+    private Map<String, String[]> deletes;
+
+    /**
+     * Constructor for an empty index, which is filled by the first update
+     */
+    public SpellIndex() {
+        counts = new HashMap<>();
+        deletes = new HashMap<>();
+    }
+
+    /**
+     * @return The fingerprint of the corpus the index was last updated to
+     */
+    public synchronized long getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Brings the index up to date with the words of a corpus. The deletes of the words that are no longer in the
+     * corpus are taken out and the deletes of the new words are put in, and the rest are left as they are.
+     * @param words The number of documents each word of the corpus appears in
+     * @param fingerprint The fingerprint of the corpus
+     */
+    public synchronized void update(Map<String, Integer> words, long fingerprint) {
+        //The words taken out are gathered first, so the words kept under each delete are only copied once
+        Map<String, Set<String>> removed = new HashMap<>();
+        for (String word : counts.keySet()) {
+            if (!words.containsKey(word)) {
+                for (String delete : deletesOf(word))
+                    removed.computeIfAbsent(delete, d -> new HashSet<>()).add(word);
+            }
+        }
+        removed.forEach((delete, gone) -> {
+            String[] rest = Arrays.stream(deletes.get(delete)).filter(w -> w != null && !gone.contains(w))
+                    .toArray(String[]::new);
+            if (rest.length == 0)
+                deletes.remove(delete);
+            else
+                deletes.put(delete, rest);
+        });
+
+        for (String word : words.keySet()) {
+            if (!counts.containsKey(word)) {
+                for (String delete : deletesOf(word))
+                    add(delete, word);
+            }
+        }
+        counts = new HashMap<>(words);
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * Finds the word of the corpus closest to a word
+     * @param word A word formatted the way words are kept in the index
+     * @return The closest word within MAX_DISTANCE, null if the word is in the corpus or nothing is close to it
+     */
+    public synchronized String suggest(String word) {
+        if (word.equals("") || counts.containsKey(word))
+            return null;
+        String prefix = word.substring(0, Math.min(word.length(), PREFIX));
+        String best = null;
+        int bestDistance = MAX_DISTANCE + 1;
+        int bestCount = 0;
+
+        //The deletes of the word are looked up in order of the number of letters taken out, so once more letters
+        //are taken out than the distance of the best word so far, nothing closer can be found
+        Set<String> seen = new HashSet<>();
+        Set<String> checked = new HashSet<>();
+        List<String> queue = new ArrayList<>();
+        queue.add(prefix);
+        seen.add(prefix);
+        for (int q = 0; q < queue.size(); q++) {
+            String candidate = queue.get(q);
+            int taken = prefix.length() - candidate.length();
+            if (taken > bestDistance)
+                break;
+            for (String suggestion : deletes.getOrDefault(candidate, new String[0])) {
+                if (suggestion == null)
+                    break;
+                if (!checked.add(suggestion) || Math.abs(suggestion.length() - word.length()) > bestDistance)
+                    continue;
+                int distance = distance(word, suggestion);
+                int count = counts.get(suggestion);
+                if (distance > MAX_DISTANCE)
+                    continue;
+                //Ties are broken by the word itself, so the suggestion does not depend on the order words were added
+                if (distance < bestDistance || distance == bestDistance
+                        && (count > bestCount || count == bestCount && suggestion.compareTo(best) < 0)) {
+                    best = suggestion;
+                    bestDistance = distance;
+                    bestCount = count;
+                }
+            }
+            if (taken < MAX_DISTANCE) {
+                for (int i = 0; i < candidate.length(); i++) {
+                    String delete = candidate.substring(0, i) + candidate.substring(i + 1);
+                    if (seen.add(delete))
+                        queue.add(delete);
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @param word A word of the corpus
+     * @return The start of the word and every string left after taking up to MAX_DISTANCE letters out of it
+     */
+    private static Set<String> deletesOf(String word) {
+        Set<String> found = new HashSet<>();
+        String prefix = word.substring(0, Math.min(word.length(), PREFIX));
+        found.add(prefix);
+        List<String> level = Arrays.asList(prefix);
+        for (int d = 0; d < MAX_DISTANCE; d++) {
+            List<String> next = new ArrayList<>();
+            for (String s : level) {
+                for (int i = 0; i < s.length(); i++) {
+                    String delete = s.substring(0, i) + s.substring(i + 1);
+                    if (found.add(delete))
+                        next.add(delete);
+                }
+            }
+            level = next;
+        }
+        return found;
+    }
+
+    /**
+     * Adds a word under a delete. The array of words under a delete doubles in length when it is full, and the
+     * rest of the array is left null, so adding many words under one delete is not slow.
+     * @param delete A string left after taking letters out of a word
+     * @param word The word
+     */
+    private void add(String delete, String word) {
+        String[] words = deletes.get(delete);
+        if (words == null) {
+            deletes.put(delete, new String[] {word});
+            return;
+        }
+        int n = size(words);
+        if (n == words.length) {
+            words = Arrays.copyOf(words, 2 * n);
+            deletes.put(delete, words);
+        }
+        words[n] = word;
+    }
+
+    /**
+     * @param words The words under a delete, followed by nulls
+     * @return The number of words before the first null
+     */
+    private static int size(String[] words) {
+        int low = 0;
+        int high = words.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (words[mid] != null)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * Works out the number of letters that have to be put in, taken out, changed or swapped with the letter next
+     * to them to turn one word into another
+     * @param a A word
+     * @param b Another word
+     * @return The number of edits
+     */
+    static int distance(String a, String b) {
+        int[][] d = new int[a.length() + 1][b.length() + 1];
+        for (int i = 0; i <= a.length(); i++)
+            d[i][0] = i;
+        for (int j = 0; j <= b.length(); j++)
+            d[0][j] = j;
+        for (int i = 1; i <= a.length(); i++) {
+            for (int j = 1; j <= b.length(); j++) {
+                int change = d[i - 1][j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+                d[i][j] = Math.min(change, Math.min(d[i - 1][j], d[i][j - 1]) + 1);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1))
+                    d[i][j] = Math.min(d[i][j], d[i - 2][j - 2] + 1);
+            }
+        }
+        return d[a.length()][b.length()];
+    }
+}
@@ -49,7 +49,9 @@ class Stemmer
                i_end, /* offset to end of stemmed word */
                j, k;
    private static final int INC = 50;
-                     /* unit of size whereby b is increased */
+                     /* starting size of b, which doubles when it is full */
+   private static final ThreadLocal<Stemmer> LOCAL = ThreadLocal.withInitial(Stemmer::new);
+                     /* one stemmer for each thread, so it is never shared */
    public Stemmer()
    {  b = new char[INC];
       i = 0;
@@ -62,14 +64,59 @@ class Stemmer
     */
 
    public void add(char ch)
-   {  if (i == b.length)
-      {  char[] new_b = new char[i+INC];
-         for (int c = 0; c < i; c++) new_b[c] = b[c];
-         b = new_b;
-      }
+   {  if (i == b.length) grow(i+1);
       b[i++] = ch;
    }
 
+   /** Makes room in b for at least n characters, at least doubling its size
+    * so a long word does not copy b over and over.
+    */
+
+   private void grow(int n)
+   {  char[] new_b = new char[Math.max(n, 2*b.length)];
+      System.arraycopy(b, 0, new_b, 0, i);
+      b = new_b;
+   }
+
+   /**
+    * Returns the stemmer of the calling thread, which can be reused for
+    * every word the thread stems instead of making a new one each time.
+    */
+
+   public static Stemmer local() { return LOCAL.get(); }
+
+   /**
+    * Stems len characters of w starting at off and writes the stem to the
+    * start of out, without making any objects. A stem is never longer than
+    * its word, so out needs room for len characters, and it can be the same
+    * array as w. Returns the length of the stem.
+    */
+
+   public int stem(char[] w, int off, int len, char[] out)
+   {  i = 0;
+      if (len >= b.length) grow(len+1);
+      System.arraycopy(w, off, b, 0, len);
+      i = len;
+      stem();
+      System.arraycopy(b, 0, out, 0, i_end);
+      return i_end;
+   }
+
+   /**
+    * Stems len characters of w starting at off and writes the stem to the
+    * start of out, like stem(char[], int, int, char[]).
+    */
+
+   public int stem(CharSequence w, int off, int len, char[] out)
+   {  i = 0;
+      if (len >= b.length) grow(len+1);
+      for (int c = 0; c < len; c++) b[c] = w.charAt(off+c);
+      i = len;
+      stem();
+      System.arraycopy(b, 0, out, 0, i_end);
+      return i_end;
+   }
+
 
    /** Adds wLen characters to the word being stemmed contained in a portion
     * of a char[] array. This is like repeated calls of add(char ch), but
@@ -77,12 +124,9 @@ class Stemmer
     */
 
    public void add(char[] w, int wLen)
-   {  if (i+wLen >= b.length)
-      {  char[] new_b = new char[i+wLen+INC];
-         for (int c = 0; c < i; c++) new_b[c] = b[c];
-         b = new_b;
-      }
-      for (int c = 0; c < wLen; c++) b[i++] = w[c];
+   {  if (i+wLen >= b.length) grow(i+wLen+1);
+      System.arraycopy(w, 0, b, i, wLen);
+      i += wLen;
    }
 
    /**
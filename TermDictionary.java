@@ -0,0 +1,153 @@
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The TermDictionary class gives every word of the index a dense int id, starting from 0, which is used to find
+ * its list in both the inverted index and the stemmed index. Each word is only kept once, so the two indexes
+ * share the same strings. The stem of every word is worked out once when the index is made, and kept as the id
+ * of the stem, so a stemmed search only needs an array lookup instead of running the stemmer again. Stems that
+ * are not words of the corpus themselves are given ids after the words. Words are added while the index is made,
+ * and once the stems are worked out the dictionary is only read through the Terms interface.
+ *
+ */
+
+public class TermDictionary implements Terms, Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private List<String> terms;
+    private transient Map<TermKey, Integer> ids;
+    private int[] stems;
+    private transient volatile int[] sorted;
+
+    /**
+     * Constructor for an empty dictionary that words are added to while the index is made
+     */
+    public TermDictionary() {
+        terms = new ArrayList<>();
+        ids = new HashMap<>();
+        stems = new int[0];
+    }
+
+    /**
+     * Adds a word if it is not in the dictionary yet
+     * @param term The word, already formatted the way it is kept in the index
+     * @return The id of the word
+     */
+    public int add(String term) {
+        TermKey key = new TermKey(term);
+        Integer id = ids.get(key);
+        if (id == null) {
+            id = terms.size();
+            terms.add(term);
+            ids.put(key, id);
+        }
+        return id;
+    }
+
+    /**
+     * Adds a word held in a token if it is not in the dictionary yet. The token is looked up without making a
+     * string, so a string is only made the first time a word is seen.
+     * @param term The word, already analyzed the way it is kept in the index
+     * @return The id of the word
+     */
+    public int add(Token term) {
+        Integer id = ids.get(new TermKey(term));
+        if (id == null)
+            return add(term.toString());
+        return id;
+    }
+
+    @Override
+    public int id(String term) {
+        Integer id = ids.get(new TermKey(term));
+        return id == null ? -1 : id;
+    }
+
+    @Override
+    public String term(int id) {
+        return terms.get(id);
+    }
+
+    @Override
+    public int size() {
+        return terms.size();
+    }
+
+    /**
+     * Works out the stem of every word that does not have one yet, adding the stems to the dictionary. Must be
+     * called after the last word is added and before the dictionary is shared with searches.
+     */
+    public void stemAll() {
+        int words = terms.size();
+        int from = stems.length;
+        stems = Arrays.copyOf(stems, words);
+        //Every word is only stemmed once, so the stems are written straight into one token instead of going
+        //through the cache, and a string is only made for a stem that is not a word already
+        Stemmer stemmer = Stemmer.local();
+        Token stem = new Token();
+        for (int i = from; i < words; i++) {
+            stem.set(terms.get(i));
+            stem.setLength(stemmer.stem(stem.buffer(), 0, stem.length(), stem.buffer()));
+            stems[i] = add(stem);
+        }
+        sorted = null;
+    }
+
+    @Override
+    public int stem(int id) {
+        return stems[id];
+    }
+
+    @Override
+    public int stemmed() {
+        return stems.length;
+    }
+
+    @Override
+    public int sortedSize() {
+        return sorted().length;
+    }
+
+    @Override
+    public int sortedId(int i) {
+        return sorted()[i];
+    }
+
+    /**
+     * Sorts the ids of the words of the corpus by word the first time they are needed
+     * @return The ids in sorted order
+     */
+    private int[] sorted() {
+        int[] order = sorted;
+        if (order == null) {
+            synchronized (this) {
+                order = sorted;
+                if (order == null) {
+                    order = terms.subList(0, stemmed()).stream().sorted().mapToInt(this::id).toArray();
+                    sorted = order;
+                }
+            }
+        }
+        return order;
+    }
+
+    /**
+     * Reads the dictionary from storage. The map from the words to their ids is not written with it, so it is
+     * made again from the list of words.
+     * @param in The stream the dictionary is read from
+     * @throws IOException If the stream cannot be read
+     * @throws ClassNotFoundException If a class of the dictionary cannot be found
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        ids = new HashMap<>();
+        for (int id = 0; id < terms.size(); id++)
+            ids.put(new TermKey(terms.get(id)), id);
+    }
+}
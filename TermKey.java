@@ -0,0 +1,64 @@
+/**
+ * The TermKey class is the key that maps and sets of words are kept by, so they can be looked up with a token
+ * as well as with a string. A key only wraps the letters it is given. The keys that are kept wrap strings, and a
+ * lookup can wrap the token a word was read into, so a word that is already in the map makes no string. Keys
+ * are only ever equal to other keys with the same letters, whatever they wrap, so the same words are equal in
+ * both directions.
+ * A key that wraps a token must only be used for a lookup, since the token changes with the next word.
+ *
+ */
+
+public final class TermKey {
+    private final CharSequence chars;
+    private final int hash;
+
+    /**
+     * @param chars The letters of the word, a string for a key that is kept
+     */
+    public TermKey(CharSequence chars) {
+        this.chars = chars;
+        if (chars instanceof String) {
+            hash = chars.hashCode();
+        } else {
+            //Works out the hash the same way String does, so a token and a string with the same letters match
+            int h = 0;
+            for (int i = 0; i < chars.length(); i++)
+                h = 31 * h + chars.charAt(i);
+            hash = h;
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    /**
+     * @param o Another object
+     * @return True if o is a key with the same letters
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (o == this)
+            return true;
+        if (!(o instanceof TermKey))
+            return false;
+        TermKey other = (TermKey) o;
+        int length = chars.length();
+        if (other.hash != hash || other.chars.length() != length)
+            return false;
+        for (int i = 0; i < length; i++) {
+            if (other.chars.charAt(i) != chars.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return The letters of the key as a string
+     */
+    @Override
+    public String toString() {
+        return chars.toString();
+    }
+}
@@ -0,0 +1,137 @@
+import java.util.Arrays;
+
+/**
+ * The Terms interface is the part of a term dictionary that searches read. Every word of the index has a dense
+ * int id, starting from 0, and the words of the corpus come before the stems that are only stems. Nothing can be
+ * added through it, so a dictionary can be shared by any number of searches.
+ * The sorted order is the order of the words of the corpus by String.compareTo, without the stems that are not
+ * words of the corpus, and every dictionary gives the same order for the same words.
+ *
+ */
+
+public interface Terms {
+
+    /**
+     * @param term A word formatted the way it is kept in the index
+     * @return The id of the word, -1 if it is not in the dictionary
+     */
+    int id(String term);
+
+    /**
+     * @param id The id of a word
+     * @return The word
+     */
+    String term(int id);
+
+    /**
+     * @return The number of ids given out, for both words and stems
+     */
+    int size();
+
+    /**
+     * @param id The id of a word of the corpus
+     * @return The id of the word's stem, which is the word's own id if the word is its own stem
+     */
+    int stem(int id);
+
+    /**
+     * @return The number of words that have a stem, which are the words of the corpus
+     */
+    int stemmed();
+
+    /**
+     * @return The number of ids in sorted order, which is the number of words of the corpus
+     */
+    int sortedSize();
+
+    /**
+     * @param i A position in sorted order
+     * @return The id of the word at the position
+     */
+    int sortedId(int i);
+
+    /**
+     * Finds the id to look up in one of the indexes. The stem of a word of the corpus is taken from the
+     * dictionary, only other words have to be stemmed.
+     * @param term A word formatted the way it is kept in the index
+     * @param useStemmed Gives the id of the word's stem if true
+     * @return The id of the word or its stem, -1 if it is not in the dictionary
+     */
+    default int id(String term, boolean useStemmed) {
+        int id = id(term);
+        if (!useStemmed)
+            return id;
+        if (id >= 0 && id < stemmed())
+            return stem(id);
+        return id(InvertedIndex.stem(term));
+    }
+
+    /**
+     * Gets the stem of a word from the dictionary if the word is in it, otherwise uses the stemmer
+     * @param term A word formatted the way it is kept in the index
+     * @return The stem of the word
+     */
+    default String stemOf(String term) {
+        int id = id(term);
+        if (id >= 0 && id < stemmed())
+            return term(stem(id));
+        return InvertedIndex.stem(term);
+    }
+
+    /**
+     * Finds the words of the corpus that start with a prefix, by a binary search for the first word in sorted
+     * order that does not come before the prefix and a scan from there while the words still start with it
+     * @param prefix The start of the words, formatted the way words are kept in the index
+     * @param limit The largest number of ids returned
+     * @return The ids of the words in sorted order
+     */
+    default int[] prefix(String prefix, int limit) {
+        int[] found = new int[Math.min(limit, sortedSize())];
+        int count = 0;
+        int n = sortedSize();
+        for (int i = lowerBound(prefix); i < n && count < found.length; i++) {
+            int id = sortedId(i);
+            if (!term(id).startsWith(prefix))
+                break;
+            found[count++] = id;
+        }
+        return Arrays.copyOf(found, count);
+    }
+
+    /**
+     * @param prefix The start of a word
+     * @return The first position in sorted order whose word does not come before the prefix
+     */
+    default int lowerBound(String prefix) {
+        return lowerBound(prefix, 0);
+    }
+
+    /**
+     * Finds the first position in sorted order whose word does not come before the prefix, by doubling the step
+     * forward from a position until it passes the prefix and then searching back. This is quicker than a
+     * binary search of the whole dictionary when the position is close.
+     * @param prefix The start of a word
+     * @param from A position whose word does not come after the prefix, or 0
+     * @return The first position from there whose word does not come before the prefix
+     */
+    default int lowerBound(String prefix, int from) {
+        int n = sortedSize();
+        int low = from;
+        int high = from;
+        int step = 1;
+        while (high < n && term(sortedId(high)).compareTo(prefix) < 0) {
+            low = high + 1;
+            high += step;
+            step <<= 1;
+        }
+        high = Math.min(high, n);
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (term(sortedId(mid)).compareTo(prefix) < 0)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+}
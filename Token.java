@@ -0,0 +1,111 @@
+import java.util.Arrays;
+
+/**
+ * The Token class holds one word while it goes through the stages of an analyzer. Its letters are kept in a
+ * buffer that is reused for every word, so reading and formatting a word does not make any new objects. Maps and
+ * sets of words are keyed by TermKey, so they can be looked up with a token wrapped in a key without making a
+ * string. A string is only made when a word has to be kept.
+ *
+ */
+
+public class Token implements CharSequence {
+    private char[] chars;
+    private int length;
+
+    /**
+     * Constructor for an empty token
+     */
+    public Token() {
+        chars = new char[32];
+    }
+
+    /**
+     * Constructor for a token holding a word
+     * @param word The word
+     */
+    public Token(CharSequence word) {
+        chars = new char[Math.max(word.length(), 1)];
+        set(word);
+    }
+
+    /**
+     * Replaces the letters of the token
+     * @param word The new word
+     */
+    public void set(CharSequence word) {
+        length = 0;
+        for (int i = 0; i < word.length(); i++)
+            append(word.charAt(i));
+    }
+
+    /**
+     * Empties the token
+     */
+    public void clear() {
+        length = 0;
+    }
+
+    /**
+     * Adds a letter to the end of the token
+     * @param c The letter
+     */
+    public void append(char c) {
+        if (length == chars.length)
+            chars = Arrays.copyOf(chars, 2 * length);
+        chars[length++] = c;
+    }
+
+    /**
+     * Replaces a letter of the token
+     * @param i The position of the letter
+     * @param c The new letter
+     */
+    public void setCharAt(int i, char c) {
+        chars[i] = c;
+    }
+
+    /**
+     * Cuts the token short
+     * @param length The new length, at most the current length
+     */
+    public void setLength(int length) {
+        this.length = length;
+    }
+
+    /**
+     * @return The buffer that holds the letters of the token, only the first length() of them are used
+     */
+    public char[] buffer() {
+        return chars;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int i) {
+        return chars[i];
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return new String(chars, start, end - start);
+    }
+
+    /**
+     * @return True if the token has no letters
+     */
+    public boolean isEmpty() {
+        return length == 0;
+    }
+
+    /**
+     * @return A new string with the letters of the token
+     */
+    @Override
+    public String toString() {
+        return new String(chars, 0, length);
+    }
+}
@@ -0,0 +1,200 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The WildcardIndex class expands a term with wildcards into the words of the corpus that it matches. A * stands
+ * for any number of letters and a ? for exactly one. A term whose only wildcard is a * at the end is expanded by
+ * a range scan of the sorted dictionary. Other terms use an index from every group of three letters to the ids
+ * of the words that have it, with $ marking the start and end of each word, so *put* and $te in te?t can be
+ * looked up even though they do not start the term. The words that have every group of the term are then
+ * checked against the term itself.
+ *
+ */
+
+public class WildcardIndex {
+    static final int K = 3;
+
+    private Terms terms;
+    private Map<String, int[]> grams;
+    private long millis;
+
+    /**
+     * Constructor that makes the index of the groups of letters of every word of a finished dictionary
+     * @param terms The dictionary, whose stems have already been worked out
+     */
+    public WildcardIndex(Terms terms) {
+        long start = System.nanoTime();
+        this.terms = terms;
+        int words = terms.stemmed();
+
+        //The groups are counted first so each list is made once at its full length. A word that has the same
+        //group twice is only added once, so a list can end up shorter than its count.
+        Map<String, int[]> counts = new HashMap<>();
+        for (int id = 0; id < words; id++) {
+            for (String gram : gramsOf("$" + terms.term(id) + "$"))
+                counts.computeIfAbsent(gram, g -> new int[1])[0]++;
+        }
+        grams = new HashMap<>();
+        counts.forEach((gram, count) -> {
+            grams.put(gram, new int[count[0]]);
+            count[0] = 0;
+        });
+        for (int id = 0; id < words; id++) {
+            for (String gram : gramsOf("$" + terms.term(id) + "$")) {
+                int[] list = grams.get(gram);
+                int[] filled = counts.get(gram);
+                if (filled[0] == 0 || list[filled[0] - 1] != id)
+                    list[filled[0]++] = id;
+            }
+        }
+        grams.replaceAll((gram, list) -> {
+            int n = counts.get(gram)[0];
+            return n < list.length ? Arrays.copyOf(list, n) : list;
+        });
+        millis = (System.nanoTime() - start) / 1000000;
+    }
+
+    /**
+     * @return The time it took to make the index in milliseconds
+     */
+    public long millis() {
+        return millis;
+    }
+
+    /**
+     * @return The number of different groups of letters in the words
+     */
+    public int size() {
+        return grams.size();
+    }
+
+    /**
+     * @return The total length of the lists of word ids of the groups
+     */
+    public long ids() {
+        long total = 0;
+        for (int[] list : grams.values())
+            total += list.length;
+        return total;
+    }
+
+    /**
+     * Estimates the memory the index takes up. Each list of ids is an array with a 16 byte header, and each group
+     * also takes about 80 bytes for its key and its entry in the map.
+     * @return The estimated number of bytes
+     */
+    public long bytes() {
+        return 96L * grams.size() + 4 * ids();
+    }
+
+    /**
+     * @param term A term of a query
+     * @return True if the term has a * or a ?
+     */
+    public static boolean isWildcard(String term) {
+        return term.indexOf('*') >= 0 || term.indexOf('?') >= 0;
+    }
+
+    /**
+     * Finds the words of the corpus that a term with wildcards matches
+     * @param pattern The term, formatted the way words are kept in the index apart from its wildcards
+     * @param limit The largest number of words the term is expanded to, the rest are left out
+     * @return The ids of the words that match
+     */
+    public int[] expand(String pattern, int limit) {
+        int wildcard = 0;
+        while (wildcard < pattern.length() && pattern.charAt(wildcard) != '*' && pattern.charAt(wildcard) != '?')
+            wildcard++;
+        String prefix = pattern.substring(0, wildcard);
+        if (wildcard == pattern.length() - 1 && pattern.charAt(wildcard) == '*')
+            return terms.prefix(prefix, limit);
+
+        //Without a group of three letters to look up, every word starting with the letters before the first
+        //wildcard is checked
+        int[] candidates = candidates(pattern);
+        if (candidates == null)
+            candidates = terms.prefix(prefix, Integer.MAX_VALUE);
+        int[] found = new int[Math.min(limit, candidates.length)];
+        int count = 0;
+        for (int i = 0; i < candidates.length && count < found.length; i++) {
+            if (matches(pattern, terms.term(candidates[i])))
+                found[count++] = candidates[i];
+        }
+        return Arrays.copyOf(found, count);
+    }
+
+    /**
+     * Intersects the lists of the groups of letters in the literal parts of a term, shortest first
+     * @param pattern The term with wildcards
+     * @return The ids of the words that have every group, null if no part of the term is long enough to have one
+     */
+    private int[] candidates(String pattern) {
+        List<int[]> lists = new ArrayList<>();
+        for (String part : ("$" + pattern + "$").split("[*?]")) {
+            for (String gram : gramsOf(part)) {
+                int[] list = grams.get(gram);
+                if (list == null)
+                    return new int[0];
+                lists.add(list);
+            }
+        }
+        if (lists.isEmpty())
+            return null;
+
+        lists.sort((a, b) -> Integer.compare(a.length, b.length));
+        int[] ids = lists.get(0);
+        int count = ids.length;
+        for (int i = 1; i < lists.size() && count > 0; i++) {
+            int[] out = new int[count];
+            count = DocIds.intersect(ids, count, lists.get(i), lists.get(i).length, out);
+            ids = out;
+        }
+        return Arrays.copyOf(ids, count);
+    }
+
+    /**
+     * @param s A word or a literal part of a term, with $ at the ends it has
+     * @return Every group of K letters in a row in the string
+     */
+    private static List<String> gramsOf(String s) {
+        List<String> list = new ArrayList<>();
+        for (int i = 0; i + K <= s.length(); i++)
+            list.add(s.substring(i, i + K));
+        return list;
+    }
+
+    /**
+     * Checks a word against a term with wildcards. When a letter does not match, the last * is made to cover one
+     * more letter and the check goes on from there.
+     * @param pattern The term with wildcards
+     * @param term The word
+     * @return True if the term matches the whole word
+     */
+    static boolean matches(String pattern, String term) {
+        int p = 0;
+        int t = 0;
+        int star = -1;
+        int covered = 0;
+        while (t < term.length()) {
+            char c = p < pattern.length() ? pattern.charAt(p) : 0;
+            if (c == '*') {
+                star = p++;
+                covered = t;
+            } else if (p < pattern.length() && (c == '?' || c == term.charAt(t))) {
+                p++;
+                t++;
+            } else if (star >= 0) {
+                p = star + 1;
+                t = ++covered;
+            } else {
+                return false;
+            }
+        }
+        while (p < pattern.length() && pattern.charAt(p) == '*')
+            p++;
+        return p == pattern.length();
+    }
+}
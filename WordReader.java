@@ -0,0 +1,236 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * The WordReader class splits a document into words on whitespace, the characters Character.isWhitespace or
+ * Character.isSpaceChar is true for, including the ones that are not ascii such as the em space and the
+ * ideographic space. It reads the document through a fixed size buffer so any size of document can be read with
+ * the same memory. A word that runs over
+ * the end of the buffer is carried over to the next read, so words are never split. The byte offset of each word
+ * is kept, which lets a document be read again starting from any word. Documents are read as UTF-8.
+ *
+ */
+
+public class WordReader {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_WORD = 64 * 1024;
+
+    private InputStream in;
+    private byte[] buffer;
+    private int pos;
+    private int limit;
+    private long bufferOffset;
+    private byte[] word;
+    private long wordOffset;
+    private int words;
+
+    /**
+     * Constructor for reading a document from its start
+     * @param in The contents of the document
+     */
+    public WordReader(InputStream in) {
+        this(in, 0, 0);
+    }
+
+    /**
+     * Constructor for reading a document from the middle
+     * @param in The contents of the document, already skipped to the offset
+     * @param offset The byte offset in the document where the stream starts, which must be the start of a word
+     * @param words The number of words in the document before the offset
+     */
+    public WordReader(InputStream in, long offset, int words) {
+        this.in = in;
+        this.words = words;
+        buffer = new byte[BUFFER_SIZE];
+        bufferOffset = offset;
+        word = new byte[64];
+    }
+
+    /**
+     * Reads the next word
+     * @return The next word, null at the end of the document
+     * @throws IOException If the document cannot be read
+     */
+    public String next() throws IOException {
+        int length = read();
+        return length < 0 ? null : new String(word, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads the next word into a token, decoding it from UTF-8 straight into the token without making a string.
+     * Ascii bytes are copied as they are, and a byte that does not start a valid sequence becomes \uFFFD, which
+     * the analyzer drops along with the other characters that are not part of words.
+     * @param token Gets the next word
+     * @return False at the end of the document
+     * @throws IOException If the document cannot be read
+     */
+    public boolean next(Token token) throws IOException {
+        int length = read();
+        if (length < 0)
+            return false;
+        token.clear();
+        int i = 0;
+        while (i < length) {
+            int b = word[i];
+            if (b >= 0) {
+                token.append((char) b);
+                i++;
+                continue;
+            }
+            int lead = b & 0xff;
+            int more = lead >= 0xf0 ? 3 : lead >= 0xe0 ? 2 : 1;
+            int c = lead & (0x3f >> more);
+            boolean valid = lead >= 0xc2 && lead <= 0xf4 && i + more < length;
+            for (int k = 1; k <= more && valid; k++) {
+                valid = (word[i + k] & 0xc0) == 0x80;
+                c = c << 6 | word[i + k] & 0x3f;
+            }
+            //Sequences that are longer than they need to be, surrogates and numbers past the last code point
+            //are not valid either
+            if (!valid || more == 2 && (c < 0x800 || c >= 0xd800 && c <= 0xdfff)
+                    || more == 3 && (c < 0x10000 || c > 0x10ffff)) {
+                token.append('\uFFFD');
+                i++;
+                continue;
+            }
+            if (c >= 0x10000) {
+                token.append(Character.highSurrogate(c));
+                token.append(Character.lowSurrogate(c));
+            } else {
+                token.append((char) c);
+            }
+            i += more + 1;
+        }
+        return true;
+    }
+
+    /**
+     * Reads the bytes of the next word into the word buffer
+     * @return The number of bytes in the word, -1 at the end of the document
+     * @throws IOException If the document cannot be read
+     */
+    private int read() throws IOException {
+        //Skips the whitespace before the word
+        while (true) {
+            if (pos == limit && !fill())
+                return -1;
+            int n = whitespace();
+            if (n == 0)
+                break;
+            pos += n;
+        }
+
+        //Copies the word, carrying on into the next buffer if the word runs over the end of this one. Words longer
+        //than the limit are cut short, but still count as one word.
+        wordOffset = bufferOffset + pos;
+        int length = 0;
+        while (true) {
+            if (pos == limit && !fill())
+                break;
+            if (whitespace() > 0)
+                break;
+            byte b = buffer[pos];
+            if (length < MAX_WORD) {
+                if (length == word.length)
+                    word = Arrays.copyOf(word, Math.min(word.length * 2, MAX_WORD));
+                word[length++] = b;
+            }
+            pos++;
+        }
+        words++;
+        return length;
+    }
+
+    /**
+     * @return The byte offset in the document of the last word read
+     */
+    public long getOffset() {
+        return wordOffset;
+    }
+
+    /**
+     * @return The number of words in the document up to and including the last word read
+     */
+    public int getCount() {
+        return words;
+    }
+
+    /**
+     * Closes the document
+     * @throws IOException If the document cannot be closed
+     */
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * Reads the next part of the document into the buffer
+     * @return False if the end of the document was reached
+     * @throws IOException If the document cannot be read
+     */
+    private boolean fill() throws IOException {
+        bufferOffset += limit;
+        pos = 0;
+        limit = 0;
+        int n;
+        while ((n = in.read(buffer)) == 0) {
+            //Keeps reading until something is read or the end is reached
+        }
+        if (n < 0)
+            return false;
+        limit = n;
+        return true;
+    }
+
+    /**
+     * Makes sure the buffer holds at least a number of bytes from the current position, moving the bytes that are
+     * left to the start of the buffer and reading more after them if it does not
+     * @param n The number of bytes needed
+     * @return False if the document ends first
+     * @throws IOException If the document cannot be read
+     */
+    private boolean ensure(int n) throws IOException {
+        if (limit - pos >= n)
+            return true;
+        System.arraycopy(buffer, pos, buffer, 0, limit - pos);
+        bufferOffset += pos;
+        limit -= pos;
+        pos = 0;
+        while (limit < n) {
+            int read = in.read(buffer, limit, buffer.length - limit);
+            if (read < 0)
+                return false;
+            limit += read;
+        }
+        return true;
+    }
+
+    /**
+     * Finds whether the character at the current position is whitespace. Multi byte characters never contain
+     * bytes below 0x80, so ascii whitespace is found without decoding. Every other whitespace character is two or
+     * three bytes long, so only those sequences are decoded.
+     * @return The number of bytes in the whitespace character, 0 if the character is not whitespace
+     * @throws IOException If the document cannot be read
+     */
+    private int whitespace() throws IOException {
+        int b = buffer[pos];
+        if (b >= 0)
+            return b == ' ' || b >= 0x09 && b <= 0x0d || b >= 0x1c && b <= 0x1f ? 1 : 0;
+        int lead = b & 0xff;
+        if (lead < 0xc2 || lead > 0xef)
+            return 0;
+        int more = lead >= 0xe0 ? 2 : 1;
+        if (!ensure(more + 1))
+            return 0;
+        int c = lead & (0x3f >> more);
+        for (int k = 1; k <= more; k++) {
+            int next = buffer[pos + k];
+            if ((next & 0xc0) != 0x80)
+                return 0;
+            c = c << 6 | next & 0x3f;
+        }
+        return Character.isWhitespace(c) || Character.isSpaceChar(c) ? more + 1 : 0;
+    }
+}
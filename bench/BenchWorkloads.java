@@ -0,0 +1,145 @@
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.function.IntSupplier;
+
+import benchmarks.Workloads;
+
+/**
+ * The BenchWorkloads class makes the operations timed by the benchmarks, which cannot use the classes of the
+ * default package themselves. Each corpus is written once into the temporary folder and kept for later runs,
+ * and its index is stored in the Data folder under its own collection name, the same way SearchIndex stores
+ * a collection.
+ *
+ */
+
+public class BenchWorkloads implements Workloads {
+    private static final File CORPORA = new File(System.getProperty("java.io.tmpdir"), "inverted-index-bench");
+
+    private CorpusGenerator generator = new CorpusGenerator(CorpusGenerator.VOCABULARY, CorpusGenerator.EXPONENT);
+
+    @Override
+    public String corpus(int docs, int length) {
+        File dir = new File(CORPORA, docs + "x" + length);
+        if (!dir.isDirectory()) {
+            //The corpus is written to the side and renamed, so a run that stops part way leaves nothing behind
+            File partial = new File(CORPORA, docs + "x" + length + ".partial");
+            delete(partial);
+            try {
+                generator.write(partial, docs, length, CorpusGenerator.SEED);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            if (!partial.renameTo(dir))
+                throw new UncheckedIOException(new IOException("Cannot make " + dir));
+        }
+        return dir.getPath();
+    }
+
+    @Override
+    public String word(int rank) {
+        return generator.word(rank);
+    }
+
+    @Override
+    public IntSupplier build(String corpus) {
+        InvertedIndex index = index(corpus);
+        return () -> {
+            index.rebuild();
+            return (int) index.getGeneration();
+        };
+    }
+
+    @Override
+    public IntSupplier load(String corpus) {
+        index(corpus).close();
+        return () -> {
+            InvertedIndex index = index(corpus);
+            index.close();
+            return (int) index.getGeneration();
+        };
+    }
+
+    @Override
+    public IntSupplier search(String corpus, String query, boolean stemmed) {
+        InvertedIndex index = index(corpus);
+        if (stemmed)
+            index.makeStemmedIndex();
+        boolean single = query.indexOf(' ') < 0;
+        return () -> {
+            Iterator<SearchResult> hits = single ? index.findWord(query, stemmed) : index.findWords(query, stemmed);
+            int count = 0;
+            while (hits.hasNext())
+                count += hits.next().getCount();
+            return count;
+        };
+    }
+
+    @Override
+    public IntSupplier snippets(String corpus, String query, int hits, int length) {
+        List<SearchResult> found = new ArrayList<>();
+        Searcher.page(index(corpus).findWords(query, false), 0, hits).forEachRemaining(found::add);
+        if (found.isEmpty())
+            throw new IllegalArgumentException("No hits for " + query);
+        return () -> {
+            int chars = 0;
+            try {
+                for (SearchResult hit : found)
+                    chars += hit.getWindowSnippet(length).length();
+            } catch (FileNotFoundException e) {
+                throw new UncheckedIOException(e);
+            }
+            return chars;
+        };
+    }
+
+    @Override
+    public IntSupplier intersect(String kernel, int length, int ratio) {
+        //The ids go up to four times the length of the long list, so it has about a quarter of the short list
+        Random random = new Random(42);
+        int[] large = random.ints(0, length * 4).distinct().limit(length).sorted().toArray();
+        int[] small = random.ints(0, length * 4).distinct().limit(Math.max(1, length / ratio)).sorted().toArray();
+        int[] out = new int[small.length];
+        int[] union = new int[small.length + large.length];
+        switch (kernel) {
+            case "merge":
+                return () -> DocIds.intersectMerge(small, small.length, large, large.length, out);
+            case "branchless":
+                return () -> DocIds.intersectBranchless(small, small.length, large, large.length, out);
+            case "gallop":
+                return () -> DocIds.intersectGallop(small, small.length, large, large.length, out);
+            case "intersect":
+                return () -> DocIds.intersect(small, small.length, large, large.length, out);
+            case "union":
+                return () -> DocIds.union(small, small.length, large, large.length, union);
+            default:
+                throw new IllegalArgumentException("No kernel named " + kernel);
+        }
+    }
+
+    /**
+     * @param corpus The folder of a corpus
+     * @return The index of the corpus, read from storage if it is there and made otherwise
+     */
+    private static InvertedIndex index(String corpus) {
+        return new InvertedIndex("bench-" + new File(corpus).getName(), corpus);
+    }
+
+    /**
+     * Deletes a folder and everything in it
+     * @param file The folder
+     */
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children)
+                delete(child);
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,146 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * The CorpusGenerator class writes a corpus of made up documents for the benchmarks, which is the same every
+ * time for the same settings. The words are drawn from a vocabulary by a Zipf distribution, so the word of rank
+ * r appears about 1 / (r + 1)^exponent as often as the most common word, which is how words are spread in real
+ * text. Each word is a made up stem with one of the endings "", "s", "ing" or "ed", so the stemmed index has
+ * fewer words than the index and stemmed searches combine lists. Stems that would make a stop word are skipped.
+ * Documents have between half and one and a half times the given length, and each line starts with a capital
+ * and ends with a full stop, so the words are normalized the way real text is.
+ *
+ */
+
+public class CorpusGenerator {
+    static final int VOCABULARY = 50000;
+    static final double EXPONENT = 1.0;
+    static final long SEED = 42;
+    private static final String[] ENDINGS = {"", "s", "ing", "ed"};
+    private static final String CONSONANTS = "bdfgklmnprstvz";
+    private static final String VOWELS = "aeiou";
+    private static final int LINE = 12;
+
+    private String[] words;
+    private double[] cumulative;
+
+    /**
+     * Constructor that makes the vocabulary and the chance of each word
+     * @param vocabulary The number of different words
+     * @param exponent How quickly words get rarer with their rank, 1 is typical of real text
+     */
+    public CorpusGenerator(int vocabulary, double exponent) {
+        Set<String> stopWords = new HashSet<>(new StopList().getStopList().values());
+        List<String> found = new ArrayList<>();
+        for (int stem = 0; found.size() < vocabulary; stem++) {
+            String base = stem(stem);
+            List<String> forms = new ArrayList<>();
+            for (String ending : ENDINGS) {
+                if (stopWords.contains(base + ending))
+                    break;
+                forms.add(base + ending);
+            }
+            if (forms.size() == ENDINGS.length)
+                found.addAll(forms);
+        }
+        words = found.subList(0, vocabulary).toArray(new String[vocabulary]);
+
+        cumulative = new double[vocabulary];
+        double total = 0;
+        for (int rank = 0; rank < vocabulary; rank++) {
+            total += 1 / Math.pow(rank + 1, exponent);
+            cumulative[rank] = total;
+        }
+        for (int rank = 0; rank < vocabulary; rank++)
+            cumulative[rank] /= total;
+    }
+
+    /**
+     * Writes a corpus, one document per file named doc0.txt, doc1.txt and so on
+     * @param args The folder, the number of documents and their average length in words, and then optionally
+     * the size of the vocabulary, the exponent and the seed
+     * @throws IOException If a document cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.out.println("Usage: CorpusGenerator folder documents length [vocabulary] [exponent] [seed]");
+            return;
+        }
+        int vocabulary = args.length > 3 ? Integer.parseInt(args[3]) : VOCABULARY;
+        double exponent = args.length > 4 ? Double.parseDouble(args[4]) : EXPONENT;
+        long seed = args.length > 5 ? Long.parseLong(args[5]) : SEED;
+        new CorpusGenerator(vocabulary, exponent).write(new File(args[0]), Integer.parseInt(args[1]),
+                Integer.parseInt(args[2]), seed);
+    }
+
+    /**
+     * @param rank The rank of a word, 0 for the most common word
+     * @return The word, in lower case
+     */
+    public String word(int rank) {
+        return words[rank];
+    }
+
+    /**
+     * Writes the documents of a corpus into a folder
+     * @param dir The folder, which is made if it does not exist
+     * @param docs The number of documents
+     * @param length The average number of words in a document
+     * @param seed The seed of the random numbers, the same seed always gives the same corpus
+     * @throws IOException If a document cannot be written
+     */
+    public void write(File dir, int docs, int length, long seed) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs())
+            throw new IOException("Cannot make " + dir);
+        Random random = new Random(seed);
+        for (int doc = 0; doc < docs; doc++) {
+            int words = length / 2 + random.nextInt(length + 1);
+            PrintWriter writer = new PrintWriter(new File(dir, "doc" + doc + ".txt"), "UTF-8");
+            for (int i = 0; i < words; i++) {
+                String word = word(next(random));
+                if (i % LINE == 0)
+                    word = Character.toUpperCase(word.charAt(0)) + word.substring(1);
+                writer.print(word);
+                writer.print(i % LINE == LINE - 1 || i == words - 1 ? ".\n" : " ");
+            }
+            writer.close();
+            if (writer.checkError())
+                throw new IOException("Cannot write doc" + doc + ".txt");
+        }
+    }
+
+    /**
+     * @param random The random numbers
+     * @return The rank of the next word, drawn from the Zipf distribution by a binary search of the cumulative
+     * chances
+     */
+    private int next(Random random) {
+        int rank = Arrays.binarySearch(cumulative, random.nextDouble());
+        return Math.min(rank >= 0 ? rank : -rank - 1, cumulative.length - 1);
+    }
+
+    /**
+     * Makes up a stem from syllables of a consonant and a vowel, using the number as the digits of the
+     * syllables, so every number gives a different stem of at least two syllables
+     * @param n The number of the stem
+     * @return The stem
+     */
+    private static String stem(int n) {
+        int syllables = CONSONANTS.length() * VOWELS.length();
+        StringBuilder stem = new StringBuilder();
+        do {
+            int syllable = n % syllables;
+            stem.append(CONSONANTS.charAt(syllable / VOWELS.length()));
+            stem.append(VOWELS.charAt(syllable % VOWELS.length()));
+            n /= syllables;
+        } while (n > 0 || stem.length() < 4);
+        return stem.toString();
+    }
+}
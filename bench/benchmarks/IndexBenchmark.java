@@ -0,0 +1,76 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * IndexBenchmark times making the index of a synthetic corpus from its files, and reading it back in from
+ * storage. A warm load is timed after the loading code has been run enough times to be compiled, and a cold
+ * load is the first load of a new JVM, which is what a user of SearchIndex waits for.
+ *
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class IndexBenchmark {
+    @Param({"2000"})
+    public int docs;
+
+    @Param({"300"})
+    public int length;
+
+    private IntSupplier build;
+    private IntSupplier load;
+
+    @Setup
+    public void setup() {
+        Workloads workloads = Workloads.get();
+        String corpus = workloads.corpus(docs, length);
+        build = workloads.build(corpus);
+        load = workloads.load(corpus);
+    }
+
+    /**
+     * @return The generation of the new index
+     */
+    @Benchmark
+    public int build() {
+        return build.getAsInt();
+    }
+
+    /**
+     * @return The generation of the index that was read in
+     */
+    @Benchmark
+    public int warmLoad() {
+        return load.getAsInt();
+    }
+
+    /**
+     * @return The generation of the index that was read in
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    @Fork(5)
+    public int coldLoad() {
+        return load.getAsInt();
+    }
+}
@@ -0,0 +1,56 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * IntersectBenchmark times the ways DocIds can intersect two lists of document ids, for a range of ratios
+ * between the lengths of the lists. The long list always has the same length and the short list gets shorter,
+ * which is what happens when a common word is searched with rarer and rarer words. The union of the lists is
+ * timed too, which is how the alternatives of a query are combined.
+ *
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IntersectBenchmark {
+    @Param({"merge", "branchless", "gallop", "intersect", "union"})
+    public String kernel;
+
+    @Param({"1", "4", "16", "64", "256", "1024"})
+    public int ratio;
+
+    @Param({"1048576"})
+    public int length;
+
+    private IntSupplier run;
+
+    @Setup
+    public void setup() {
+        run = Workloads.get().intersect(kernel, length, ratio);
+    }
+
+    /**
+     * @return The number of ids the kernel found
+     */
+    @Benchmark
+    public int run() {
+        return run.getAsInt();
+    }
+}
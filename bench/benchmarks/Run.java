@@ -0,0 +1,40 @@
+package benchmarks;
+
+import java.io.IOException;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * The Run class starts the benchmarks with the allocation profiler turned on, so every result also shows how
+ * many bytes were allocated per operation and how often the garbage collector ran. It takes the same options
+ * as the JMH command line, for example a pattern of the benchmarks to run or -p docs=20000 to index a bigger
+ * corpus.
+ *
+ */
+
+public class Run {
+
+    /**
+     * @param args The JMH command line options
+     * @throws CommandLineOptionException If the options cannot be read
+     * @throws IOException If the help cannot be printed
+     * @throws RunnerException If a benchmark fails
+     */
+    public static void main(String[] args) throws CommandLineOptionException, IOException, RunnerException {
+        CommandLineOptions options = new CommandLineOptions(args);
+        if (options.shouldHelp()) {
+            options.showHelp();
+            return;
+        }
+        if (options.shouldList()) {
+            new Runner(options).list();
+            return;
+        }
+        new Runner(new OptionsBuilder().parent(options).addProfiler(GCProfiler.class).build()).run();
+    }
+}
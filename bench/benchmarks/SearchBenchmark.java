@@ -0,0 +1,94 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * SearchBenchmark times searches of the index of a synthetic corpus, making every hit, and the snippets of the
+ * first hits of a search. The words searched for are picked by their rank in the vocabulary: frequent words
+ * have long lists, rare words have short ones, and mixed searches a frequent word with a rare one, which is
+ * where skipping through the long list pays off. The two words of a query have different stems.
+ *
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+    private static final int SNIPPETS = 10;
+    private static final int LENGTH = 5;
+
+    @Param({"2000"})
+    public int docs;
+
+    @Param({"300"})
+    public int length;
+
+    @Param({"frequent", "rare", "mixed"})
+    public String terms;
+
+    private IntSupplier single;
+    private IntSupplier multi;
+    private IntSupplier stemmed;
+    private IntSupplier snippets;
+
+    @Setup
+    public void setup() {
+        Workloads workloads = Workloads.get();
+        String corpus = workloads.corpus(docs, length);
+        int[] ranks = terms.equals("frequent") ? new int[] {2, 5} : terms.equals("rare") ? new int[] {502, 905}
+                : new int[] {2, 905};
+        String query = workloads.word(ranks[0]) + " " + workloads.word(ranks[1]);
+        single = workloads.search(corpus, workloads.word(ranks[0]), false);
+        multi = workloads.search(corpus, query, false);
+        stemmed = workloads.search(corpus, query, true);
+        snippets = workloads.snippets(corpus, query, SNIPPETS, LENGTH);
+    }
+
+    /**
+     * @return The number of times the word appears in the corpus
+     */
+    @Benchmark
+    public int singleTerm() {
+        return single.getAsInt();
+    }
+
+    /**
+     * @return The number of times the words appear in the documents that have both
+     */
+    @Benchmark
+    public int multiTerm() {
+        return multi.getAsInt();
+    }
+
+    /**
+     * @return The number of times the stems appear in the documents that have both
+     */
+    @Benchmark
+    public int stemmed() {
+        return stemmed.getAsInt();
+    }
+
+    /**
+     * @return The total length of the snippets
+     */
+    @Benchmark
+    public int snippets() {
+        return snippets.getAsInt();
+    }
+}
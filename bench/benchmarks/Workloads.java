@@ -0,0 +1,78 @@
+package benchmarks;
+
+import java.util.function.IntSupplier;
+
+/**
+ * The Workloads interface makes the operations that the benchmarks time. JMH only runs benchmarks that are in a
+ * package, and the index is in the default package, which no class in a package can name, so the benchmarks
+ * get their operations through this interface from BenchWorkloads, which is in the default package. Each
+ * operation returns a number worked out from its result, which JMH uses so the work cannot be left out.
+ *
+ */
+
+public interface Workloads {
+
+    /**
+     * @return The workloads of the index, made by the class in the default package
+     */
+    static Workloads get() {
+        try {
+            return (Workloads) Class.forName("BenchWorkloads").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("BenchWorkloads is not on the class path", e);
+        }
+    }
+
+    /**
+     * Writes the synthetic corpus with the given settings, unless it was already written by an earlier run
+     * @param docs The number of documents
+     * @param length The average number of words in a document
+     * @return The folder of the corpus
+     */
+    String corpus(int docs, int length);
+
+    /**
+     * @param rank The rank of a word of the synthetic vocabulary, 0 for the most common word
+     * @return The word
+     */
+    String word(int rank);
+
+    /**
+     * @param corpus The folder of a corpus
+     * @return An operation that indexes the corpus from its files and writes the index to storage
+     */
+    IntSupplier build(String corpus);
+
+    /**
+     * @param corpus The folder of a corpus, which is indexed into storage first if it is not there yet
+     * @return An operation that reads the index of the corpus in from storage
+     */
+    IntSupplier load(String corpus);
+
+    /**
+     * @param corpus The folder of a corpus, which is indexed first
+     * @param query The words of the query, one word searches for a single word
+     * @param stemmed Searches the stemmed index if true
+     * @return An operation that makes every hit of the query
+     */
+    IntSupplier search(String corpus, String query, boolean stemmed);
+
+    /**
+     * @param corpus The folder of a corpus, which is indexed first
+     * @param query The words of the query
+     * @param hits The number of hits that get a snippet
+     * @param length The number of words before and after a word in a snippet
+     * @return An operation that reads the snippet that shows the most words of the query for each of the first
+     * hits
+     */
+    IntSupplier snippets(String corpus, String query, int hits, int length);
+
+    /**
+     * @param kernel The name of one of the ways of intersecting lists of document ids in DocIds: merge,
+     * branchless, gallop, intersect, or union
+     * @param length The length of the long list
+     * @param ratio How many times longer the long list is than the short list
+     * @return An operation that runs the kernel on two lists of random ids
+     */
+    IntSupplier intersect(String kernel, int length, int ratio);
+}